@@ -0,0 +1,205 @@
+// K6 Test: Room Fan-out Benchmark
+// Measures delivery latency, frames and bytes of room broadcasts for each wire format,
+// with and without batched delivery, across one or several nodes.
+//
+// Seed the bench users and room first: psql -U myuser -d nexuschat -f 09-fanout-seed.sql
+//
+// Usage: k6 run 09-fanout-benchmark.js
+//   FORMAT=text|json.binary|cbor|deflate   wire format of the receivers (default text)
+//   BATCH=true                             receivers connect with ?batch=true
+//   MEMBERS=200                            receiving bench users (max 1000)
+//   DEVICES=1                              connections per receiving user
+//   SENDERS=5 RATE=4                       senders and messages per second each; keep RATE
+//                                          under chat.ws.rate-limit.send-msg.user-per-second
+//   PAYLOAD_BYTES=200                      message text length; use 2000+ to exercise deflate
+//   META_BYTES=0                           size of a contentMeta object sent with each message
+//   DURATION=30s
+//   WS_URLS=ws://node1:8080/ws/chat,ws://node2:8080/ws/chat
+//                                          receivers round-robin over the nodes, senders use
+//                                          the first; run once per chat.ws.transport
+//                                          (pubsub, streams) to compare the two
+//
+// Latency is read from the "bench:<sentAt>:" marker in the message text, which stays
+// readable in JSON, CBOR and raw deflate frames. Compressed deflate frames are counted
+// in frames and bytes only. Senders also time the broadcast of their own messages back
+// to them (send_echo_ms), which covers validation, persistence and publishing.
+
+import http from 'k6/http';
+import ws from 'k6/ws';
+import { check, sleep } from 'k6';
+import { Counter, Trend } from 'k6/metrics';
+import { config, generateUUID, getToken, createAuthHeaders } from './config.js';
+
+const FORMAT = __ENV.FORMAT || 'text';
+const BATCH = __ENV.BATCH === 'true';
+const MEMBERS = parseInt(__ENV.MEMBERS || '200');
+const DEVICES = parseInt(__ENV.DEVICES || '1');
+const SENDERS = parseInt(__ENV.SENDERS || '5');
+const RATE = parseFloat(__ENV.RATE || '4');
+const PAYLOAD_BYTES = parseInt(__ENV.PAYLOAD_BYTES || '200');
+const META_BYTES = parseInt(__ENV.META_BYTES || '0');
+const DURATION = __ENV.DURATION || '30s';
+const WS_URLS = (__ENV.WS_URLS || config.wsUrl).split(',');
+const ROOM_ID = __ENV.ROOM_ID || '650e8400-e29b-41d4-a716-4466554400ff';
+
+const SUBPROTOCOLS = {
+  'text': null,
+  'json.binary': 'nexus.json.binary',
+  'cbor': 'nexus.cbor',
+  'deflate': 'nexus.json.deflate'
+};
+
+const fanoutLatency = new Trend('fanout_latency_ms', true);
+const fanoutEvents = new Counter('fanout_events');
+const fanoutFrames = new Counter('fanout_frames');
+const fanoutBytes = new Counter('fanout_bytes');
+const deflatedFrames = new Counter('fanout_deflated_frames');
+const messagesSent = new Counter('fanout_messages_sent');
+const sendEcho = new Trend('send_echo_ms', true);
+
+// Receivers hold their connections for the whole run; senders start once they are connected
+export const options = {
+  scenarios: {
+    receivers: {
+      executor: 'per-vu-iterations',
+      exec: 'receive',
+      vus: MEMBERS * DEVICES,
+      iterations: 1,
+      maxDuration: '10m',
+    },
+    senders: {
+      executor: 'per-vu-iterations',
+      exec: 'send',
+      vus: SENDERS,
+      iterations: 1,
+      startTime: '5s',
+      maxDuration: '10m',
+    },
+  },
+  thresholds: {
+    fanout_latency_ms: ['p(95)<500'],
+  },
+};
+
+function benchUser(index) {
+  return {
+    id: '00000000-0000-4000-8000-' + String(index).padStart(12, '0'),
+    name: 'Bench ' + index
+  };
+}
+
+function durationMs(value) {
+  const match = /^(\d+)(ms|s|m)$/.exec(value);
+  const factor = { ms: 1, s: 1000, m: 60000 };
+  return match ? parseInt(match[1]) * factor[match[2]] : 30000;
+}
+
+export function setup() {
+  // Users 1..SENDERS send, the next MEMBERS users receive
+  const tokens = [];
+  for (let i = 1; i <= SENDERS + MEMBERS; i++) {
+    tokens.push(getToken(benchUser(i)));
+  }
+  console.log(`Fan-out benchmark: format=${FORMAT} batch=${BATCH} members=${MEMBERS} devices=${DEVICES} ` +
+              `senders=${SENDERS} rate=${RATE}/s payload=${PAYLOAD_BYTES}B meta=${META_BYTES}B nodes=${WS_URLS.length}`);
+  return { tokens, adminToken: getToken(config.users.alice) };
+}
+
+function connectUrl(url, token) {
+  return `${url}?token=${token}` + (BATCH ? '&batch=true' : '');
+}
+
+function record(frame) {
+  const now = Date.now();
+  fanoutFrames.add(1);
+  const bytes = typeof frame === 'string' ? frame.length : frame.byteLength;
+  fanoutBytes.add(bytes);
+
+  let text = frame;
+  if (typeof frame !== 'string') {
+    const view = new Uint8Array(frame);
+    if (FORMAT === 'deflate' && view[0] === 1) {
+      deflatedFrames.add(1);
+      return;
+    }
+    text = '';
+    for (let i = 0; i < view.length; i += 8192) {
+      text += String.fromCharCode.apply(null, Array.from(view.subarray(i, i + 8192)));
+    }
+  }
+  const marker = /bench:(\d+):/g;
+  let match;
+  while ((match = marker.exec(text)) !== null) {
+    fanoutEvents.add(1);
+    fanoutLatency.add(now - parseInt(match[1]));
+  }
+}
+
+export function receive(data) {
+  const receiver = Math.floor((__VU - 1) / DEVICES);
+  const token = data.tokens[SENDERS + (receiver % MEMBERS)];
+  const url = WS_URLS[(__VU - 1) % WS_URLS.length];
+  const subprotocol = SUBPROTOCOLS[FORMAT];
+  const params = subprotocol ? { headers: { 'Sec-WebSocket-Protocol': subprotocol } } : {};
+
+  const res = ws.connect(connectUrl(url, token), params, function (socket) {
+    socket.on('message', record);
+    socket.on('binaryMessage', record);
+    socket.on('error', (error) => console.log('[ERROR] Receiver', __VU, error));
+    socket.setTimeout(() => socket.close(1000, 'Benchmark complete'), durationMs(DURATION) + 10000);
+  });
+
+  check(res, { 'Receiver - Status is 101': (r) => r && r.status === 101 });
+}
+
+export function send(data) {
+  const token = data.tokens[__VU - 1];
+  const padding = 'x'.repeat(Math.max(0, PAYLOAD_BYTES - 28));
+  const ownMarker = new RegExp(`bench:(\\d+):s${__VU}:`, 'g');
+  const contentMeta = META_BYTES > 0
+      ? { fileName: 'bench.bin', note: 'y'.repeat(META_BYTES), tags: ['bench', 'fanout'] }
+      : null;
+  const interval = 1000 / RATE;
+
+  const res = ws.connect(`${WS_URLS[0]}?token=${token}`, {}, function (socket) {
+    socket.on('open', () => {
+      socket.setInterval(() => {
+        socket.send(JSON.stringify({
+          event: config.events.SEND_MSG,
+          traceId: generateUUID(),
+          data: {
+            roomId: ROOM_ID,
+            type: config.messageTypes.TEXT,
+            contentText: `bench:${Date.now()}:s${__VU}:${padding}`,
+            contentMeta: contentMeta,
+            clientRef: generateUUID()
+          }
+        }));
+        messagesSent.add(1);
+      }, interval);
+      socket.setTimeout(() => socket.close(1000, 'Benchmark complete'), durationMs(DURATION));
+    });
+    socket.on('message', (message) => {
+      const now = Date.now();
+      let match;
+      ownMarker.lastIndex = 0;
+      while ((match = ownMarker.exec(message)) !== null) {
+        sendEcho.add(now - parseInt(match[1]));
+      }
+    });
+    socket.on('error', (error) => console.log('[ERROR] Sender', __VU, error));
+  });
+
+  check(res, { 'Sender - Status is 101': (r) => r && r.status === 101 });
+}
+
+export function teardown(data) {
+  sleep(5);
+  // Per-node delivery counters: coalescedFrames, droppedFrames, rateLimitedEvents, ...
+  const baseUrls = WS_URLS.map((url) => url.replace(/^ws/, 'http').replace(/\/ws\/chat$/, ''));
+  for (const baseUrl of baseUrls) {
+    const res = http.get(`${baseUrl}/api/back/admin/websocket/stats`,
+                         { headers: createAuthHeaders(data.adminToken) });
+    console.log(`WebSocket stats of ${baseUrl}:`, res.status === 200 ? res.body : res.status);
+  }
+}
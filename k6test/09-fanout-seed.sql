@@ -0,0 +1,17 @@
+-- Seed data for 09-fanout-benchmark.js
+-- 1000 bench users, all participants of one GROUP bench room.
+-- Usage: psql -U myuser -d nexuschat -f k6test/09-fanout-seed.sql
+
+INSERT INTO chat_users (id, name, tenant_id, created_at)
+SELECT ('00000000-0000-4000-8000-' || lpad(i::text, 12, '0'))::uuid, 'Bench ' || i, 'test-tenant', NOW()
+FROM generate_series(1, 1000) AS i
+ON CONFLICT (id) DO NOTHING;
+
+INSERT INTO rooms (id, type, name, tenant_id, created_at, updated_at) VALUES
+('650e8400-e29b-41d4-a716-4466554400ff', 'GROUP', 'Fan-out Benchmark', 'test-tenant', NOW(), NOW())
+ON CONFLICT (id) DO NOTHING;
+
+INSERT INTO room_participants (room_id, user_id, role, joined_at)
+SELECT '650e8400-e29b-41d4-a716-4466554400ff', ('00000000-0000-4000-8000-' || lpad(i::text, 12, '0'))::uuid, 'MEMBER', NOW()
+FROM generate_series(1, 1000) AS i
+ON CONFLICT (room_id, user_id) DO NOTHING;
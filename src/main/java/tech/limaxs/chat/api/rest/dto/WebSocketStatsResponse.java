@@ -0,0 +1,112 @@
+package tech.limaxs.chat.api.rest.dto;
+
+import io.quarkus.runtime.annotations.RegisterForReflection;
+
+/**
+ * WebSocket delivery statistics for this node.
+ */
+@RegisterForReflection
+public class WebSocketStatsResponse {
+    private int connections;
+    private int handshakesInFlight;
+    private long queuedBytes;
+    private int congestedConnections;
+    private long droppedFrames;
+    private long slowConsumerEvictions;
+    private long coalescedFrames;
+    private long rateLimitedEvents;
+    private long heartbeatReaped;
+    private long redeliveredFrames;
+    private int subscribedChannels;
+
+    public WebSocketStatsResponse() {
+    }
+
+    public int getConnections() {
+        return connections;
+    }
+
+    public void setConnections(int connections) {
+        this.connections = connections;
+    }
+
+    public int getHandshakesInFlight() {
+        return handshakesInFlight;
+    }
+
+    public void setHandshakesInFlight(int handshakesInFlight) {
+        this.handshakesInFlight = handshakesInFlight;
+    }
+
+    public long getQueuedBytes() {
+        return queuedBytes;
+    }
+
+    public void setQueuedBytes(long queuedBytes) {
+        this.queuedBytes = queuedBytes;
+    }
+
+    public int getCongestedConnections() {
+        return congestedConnections;
+    }
+
+    public void setCongestedConnections(int congestedConnections) {
+        this.congestedConnections = congestedConnections;
+    }
+
+    public long getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    public void setDroppedFrames(long droppedFrames) {
+        this.droppedFrames = droppedFrames;
+    }
+
+    public long getSlowConsumerEvictions() {
+        return slowConsumerEvictions;
+    }
+
+    public void setSlowConsumerEvictions(long slowConsumerEvictions) {
+        this.slowConsumerEvictions = slowConsumerEvictions;
+    }
+
+    public long getCoalescedFrames() {
+        return coalescedFrames;
+    }
+
+    public void setCoalescedFrames(long coalescedFrames) {
+        this.coalescedFrames = coalescedFrames;
+    }
+
+    public long getRateLimitedEvents() {
+        return rateLimitedEvents;
+    }
+
+    public void setRateLimitedEvents(long rateLimitedEvents) {
+        this.rateLimitedEvents = rateLimitedEvents;
+    }
+
+    public long getHeartbeatReaped() {
+        return heartbeatReaped;
+    }
+
+    public void setHeartbeatReaped(long heartbeatReaped) {
+        this.heartbeatReaped = heartbeatReaped;
+    }
+
+    public long getRedeliveredFrames() {
+        return redeliveredFrames;
+    }
+
+    public void setRedeliveredFrames(long redeliveredFrames) {
+        this.redeliveredFrames = redeliveredFrames;
+    }
+
+    public int getSubscribedChannels() {
+        return subscribedChannels;
+    }
+
+    public void setSubscribedChannels(int subscribedChannels) {
+        this.subscribedChannels = subscribedChannels;
+    }
+}
@@ -6,8 +6,12 @@ import jakarta.validation.Valid;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.Response;
 import tech.limaxs.chat.api.rest.dto.ArchiveSummaryResponse;
+import tech.limaxs.chat.api.rest.dto.WebSocketStatsResponse;
 import tech.limaxs.chat.core.service.RoomArchiveService;
 import tech.limaxs.chat.infra.auth.JwtPrincipal;
+import tech.limaxs.chat.infra.redis.RedisSubscriptions;
+import tech.limaxs.chat.infra.websocket.AdmissionController;
+import tech.limaxs.chat.infra.websocket.WebSocketMetrics;
 
 import java.util.UUID;
 
@@ -18,12 +22,21 @@ public class AdminResource {
 
     private final RoomArchiveService archiveService;
     private final JwtPrincipal jwtPrincipal;
+    private final AdmissionController admissionController;
+    private final WebSocketMetrics webSocketMetrics;
+    private final RedisSubscriptions redisSubscriptions;
 
     public AdminResource(
             RoomArchiveService archiveService,
-            JwtPrincipal jwtPrincipal) {
+            JwtPrincipal jwtPrincipal,
+            AdmissionController admissionController,
+            WebSocketMetrics webSocketMetrics,
+            RedisSubscriptions redisSubscriptions) {
         this.archiveService = archiveService;
         this.jwtPrincipal = jwtPrincipal;
+        this.admissionController = admissionController;
+        this.webSocketMetrics = webSocketMetrics;
+        this.redisSubscriptions = redisSubscriptions;
     }
 
     // POST /api/admin/archive/{roomId} - Trigger archive
@@ -43,6 +56,25 @@ public class AdminResource {
         return Response.ok(new ArchivedCheckResponse(roomId, archived)).build();
     }
 
+    // GET /api/admin/websocket/stats - WebSocket delivery statistics for this node
+    @GET
+    @Path("/websocket/stats")
+    public Response getWebSocketStats() {
+        WebSocketStatsResponse stats = new WebSocketStatsResponse();
+        stats.setConnections(admissionController.getConnectionCount());
+        stats.setHandshakesInFlight(admissionController.getHandshakesInFlight());
+        stats.setQueuedBytes(webSocketMetrics.getQueuedBytes());
+        stats.setCongestedConnections(webSocketMetrics.getCongestedConnections());
+        stats.setDroppedFrames(webSocketMetrics.getDroppedFrames());
+        stats.setSlowConsumerEvictions(webSocketMetrics.getSlowConsumerEvictions());
+        stats.setCoalescedFrames(webSocketMetrics.getCoalescedFrames());
+        stats.setRateLimitedEvents(webSocketMetrics.getRateLimitedEvents());
+        stats.setHeartbeatReaped(webSocketMetrics.getHeartbeatReaped());
+        stats.setRedeliveredFrames(webSocketMetrics.getRedeliveredFrames());
+        stats.setSubscribedChannels(redisSubscriptions.subscribedCount());
+        return Response.ok(stats).build();
+    }
+
     // Simple response for archive check
     @io.quarkus.runtime.annotations.RegisterForReflection
     public static class ArchivedCheckResponse {
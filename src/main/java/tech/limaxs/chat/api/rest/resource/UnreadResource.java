@@ -0,0 +1,40 @@
+package tech.limaxs.chat.api.rest.resource;
+
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.MediaType;
+import tech.limaxs.chat.infra.auth.JwtPrincipal;
+import tech.limaxs.chat.infra.redis.RedisService;
+
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Unread counts of the authenticated user.
+ */
+@Path("/api/front/unread")
+@ApplicationScoped
+public class UnreadResource {
+
+    private final RedisService redisService;
+    private final JwtPrincipal jwtPrincipal;
+
+    public UnreadResource(RedisService redisService, JwtPrincipal jwtPrincipal) {
+        this.redisService = redisService;
+        this.jwtPrincipal = jwtPrincipal;
+    }
+
+    /**
+     * GET /api/front/unread
+     * Returns {roomId: count} for every room with unread messages, read with one
+     * HGETALL of the user's unread hash. Rooms without unread messages are absent.
+     */
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    public Uni<Map<UUID, Long>> getUnreadCounts() {
+        return redisService.getUnreadCounts(jwtPrincipal.getUserId());
+    }
+}
@@ -0,0 +1,31 @@
+package tech.limaxs.chat.api.websocket.dto;
+
+import io.quarkus.runtime.annotations.RegisterForReflection;
+import java.util.UUID;
+
+/**
+ * DTO for ACK WebSocket event.
+ * {@code seq} is the highest contiguous sequence number received on a connection
+ * opened with {@code ?ack=true}.
+ */
+@RegisterForReflection
+public class AckData {
+    private Long seq;
+    private UUID messageId;
+
+    public Long getSeq() {
+        return seq;
+    }
+
+    public void setSeq(Long seq) {
+        this.seq = seq;
+    }
+
+    public UUID getMessageId() {
+        return messageId;
+    }
+
+    public void setMessageId(UUID messageId) {
+        this.messageId = messageId;
+    }
+}
@@ -0,0 +1,53 @@
+package tech.limaxs.chat.api.websocket.dto;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.io.ContentReference;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Captures a JSON object or array as its raw text, e.g. contentMeta destined for a JSONB column.
+ *
+ * When the parser was created over a String or byte[] with source locations enabled,
+ * the value is sliced straight out of the input without building a tree.
+ * Otherwise (CBOR input, buffered tokens) it is copied token by token.
+ */
+public class RawJsonDeserializer extends StdDeserializer<String> {
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    public RawJsonDeserializer() {
+        super(String.class);
+    }
+
+    @Override
+    public String deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+        if (p.currentToken().isStructStart()) {
+            ContentReference source = p.currentLocation().contentReference();
+            Object content = source != null && source.hasTextualContent() ? source.getRawContent() : null;
+            if (content instanceof String || content instanceof byte[]) {
+                JsonLocation start = p.currentTokenLocation();
+                p.skipChildren();
+                JsonLocation end = p.currentLocation();
+                if (content instanceof String text) {
+                    return text.substring((int) start.getCharOffset(), (int) end.getCharOffset());
+                }
+                int from = (int) start.getByteOffset();
+                return new String((byte[]) content, from, (int) end.getByteOffset() - from, StandardCharsets.UTF_8);
+            }
+        }
+
+        StringWriter out = new StringWriter();
+        try (JsonGenerator generator = JSON.createGenerator(out)) {
+            generator.copyCurrentStructure(p);
+        }
+        return out.toString();
+    }
+}
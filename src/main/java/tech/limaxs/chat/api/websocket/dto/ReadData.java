@@ -0,0 +1,30 @@
+package tech.limaxs.chat.api.websocket.dto;
+
+import io.quarkus.runtime.annotations.RegisterForReflection;
+import java.util.UUID;
+
+/**
+ * DTO for READ WebSocket event.
+ * {@code messageId} is the newest message of the room the user has read.
+ */
+@RegisterForReflection
+public class ReadData {
+    private UUID roomId;
+    private UUID messageId;
+
+    public UUID getRoomId() {
+        return roomId;
+    }
+
+    public void setRoomId(UUID roomId) {
+        this.roomId = roomId;
+    }
+
+    public UUID getMessageId() {
+        return messageId;
+    }
+
+    public void setMessageId(UUID messageId) {
+        this.messageId = messageId;
+    }
+}
@@ -0,0 +1,22 @@
+package tech.limaxs.chat.api.websocket.dto;
+
+import io.quarkus.runtime.annotations.RegisterForReflection;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * DTO for RESUME WebSocket event.
+ * Maps each room ID to the ID of the last message the client has seen in it.
+ */
+@RegisterForReflection
+public class ResumeData {
+    private Map<UUID, UUID> cursors;
+
+    public Map<UUID, UUID> getCursors() {
+        return cursors;
+    }
+
+    public void setCursors(Map<UUID, UUID> cursors) {
+        this.cursors = cursors;
+    }
+}
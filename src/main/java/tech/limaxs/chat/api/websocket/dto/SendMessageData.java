@@ -1,5 +1,6 @@
 package tech.limaxs.chat.api.websocket.dto;
 
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import io.quarkus.runtime.annotations.RegisterForReflection;
 import java.util.UUID;
 
@@ -8,6 +9,8 @@ public class SendMessageData {
     private UUID roomId;
     private String type;
     private String contentText;
+    // Raw JSON text, stored as-is into the JSONB column
+    @JsonDeserialize(using = RawJsonDeserializer.class)
     private String contentMeta;
     private UUID clientRef;
 
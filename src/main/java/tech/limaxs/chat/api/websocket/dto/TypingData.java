@@ -1,11 +1,13 @@
 package tech.limaxs.chat.api.websocket.dto;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import io.quarkus.runtime.annotations.RegisterForReflection;
 import java.util.UUID;
 
 @RegisterForReflection
 public class TypingData {
     private UUID roomId;
+    private UUID userId;
     private boolean isTyping;
 
     public UUID getRoomId() {
@@ -16,10 +18,20 @@ public class TypingData {
         this.roomId = roomId;
     }
 
+    public UUID getUserId() {
+        return userId;
+    }
+
+    public void setUserId(UUID userId) {
+        this.userId = userId;
+    }
+
+    @JsonProperty("isTyping")
     public boolean isTyping() {
         return isTyping;
     }
 
+    @JsonProperty("isTyping")
     public void setTyping(boolean typing) {
         isTyping = typing;
     }
@@ -1,23 +1,55 @@
 package tech.limaxs.chat.api.websocket.handler;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.quarkus.websockets.next.CloseReason;
+import io.quarkus.websockets.next.OnBinaryMessage;
 import io.quarkus.websockets.next.OnClose;
 import io.quarkus.websockets.next.OnError;
 import io.quarkus.websockets.next.OnOpen;
+import io.quarkus.websockets.next.OnPongMessage;
 import io.quarkus.websockets.next.OnTextMessage;
 import io.quarkus.websockets.next.WebSocket;
 import io.quarkus.websockets.next.WebSocketConnection;
 import io.smallrye.mutiny.Uni;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
 import io.vertx.mutiny.pgclient.PgPool;
 import io.vertx.mutiny.sqlclient.Tuple;
 import tech.limaxs.chat.api.websocket.dto.*;
+import tech.limaxs.chat.api.websocket.handler.InboundEventDecoder.InboundEvent;
+import tech.limaxs.chat.core.service.MessageWriter;
+import tech.limaxs.chat.core.service.ReadStateWriter;
+import tech.limaxs.chat.core.service.RoomActivityWriter;
+import tech.limaxs.chat.infra.auth.JwtVerifier;
+import tech.limaxs.chat.infra.config.WebSocketConfig;
 import tech.limaxs.chat.infra.redis.RedisService;
-
+import tech.limaxs.chat.infra.websocket.AdmissionController;
+import tech.limaxs.chat.infra.websocket.CborCodec;
+import tech.limaxs.chat.infra.websocket.ClientRefCache;
+import tech.limaxs.chat.infra.websocket.CloseCodes;
+import tech.limaxs.chat.infra.websocket.DeflateCodec;
+import tech.limaxs.chat.infra.websocket.DeliveryTracker;
+import tech.limaxs.chat.infra.websocket.HeartbeatWheel.Heartbeat;
+import tech.limaxs.chat.infra.websocket.HeartbeatWheel;
+import tech.limaxs.chat.infra.websocket.MembershipCache;
+import tech.limaxs.chat.infra.websocket.OutboundFrame;
+import tech.limaxs.chat.infra.websocket.OutboundQueue;
+import tech.limaxs.chat.infra.websocket.RateLimiter;
+import tech.limaxs.chat.infra.websocket.TypingThrottle;
+import tech.limaxs.chat.infra.websocket.WebSocketMetrics;
+import tech.limaxs.chat.infra.websocket.WireFormat;
+
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
@@ -29,8 +61,16 @@ public class ChatWebSocketHandler {
     private static final Logger LOG = Logger.getLogger(ChatWebSocketHandler.class.getName());
 
     private static final Map<String, UserSession> sessions = new ConcurrentHashMap<>();
-    private static final Map<UUID, WebSocketConnection> userConnections = new ConcurrentHashMap<>();
+    // Per-user connections (one per device), copy-on-write so fan-out reads need no locking
+    private static final Map<UUID, WebSocketConnection[]> userConnections = new ConcurrentHashMap<>();
     private static final Map<UUID, Map<String, WebSocketConnection>> roomConnections = new ConcurrentHashMap<>();
+    private static volatile InterestListener interestListener = new InterestListener() {
+        @Override
+        public void roomInterestChanged(UUID roomId) {}
+
+        @Override
+        public void userInterestChanged(UUID userId) {}
+    };
 
     @Inject
     RedisService redisService;
@@ -38,65 +78,136 @@ public class ChatWebSocketHandler {
     @Inject
     PgPool pgPool;
 
+    @Inject
+    JwtVerifier jwtVerifier;
+
+    @Inject
+    AdmissionController admissionController;
+
+    @Inject
+    WebSocketConfig webSocketConfig;
+
+    @Inject
+    WebSocketMetrics webSocketMetrics;
+
+    @Inject
+    Vertx vertx;
+
+    @Inject
+    TypingThrottle typingThrottle;
+
+    @Inject
+    RateLimiter rateLimiter;
+
+    @Inject
+    HeartbeatWheel heartbeatWheel;
+
+    @Inject
+    DeliveryTracker deliveryTracker;
+
+    @Inject
+    ClientRefCache clientRefCache;
+
+    @Inject
+    MessageWriter messageWriter;
+
+    @Inject
+    RoomActivityWriter roomActivityWriter;
+
+    @Inject
+    ReadStateWriter readStateWriter;
+
+    @Inject
+    MembershipCache membershipCache;
+
     private final ObjectMapper objectMapper = new ObjectMapper();
+    private final InboundEventDecoder decoder = new InboundEventDecoder();
 
     @OnOpen
     public Uni<Void> onOpen(WebSocketConnection connection) {
-        String token = extractTokenFromQuery(connection);
+        String token = extractQueryParam(connection, "token");
 
         if (token == null || token.isEmpty()) {
             LOG.warning("WebSocket connection rejected: No token provided");
-            connection.sendText("{\"error\":\"No token provided\"}");
-            connection.close();
-            return Uni.createFrom().voidItem();
+            return reject(connection, "{\"error\":\"No token provided\"}", CloseReason.NORMAL);
         }
 
-        try {
-            io.jsonwebtoken.JwtParser parser = io.jsonwebtoken.Jwts.parser()
-                .verifyWith(readPublicKey())
-                .build();
+        // Admission runs on the event loop and is cheap; the RSA check is not
+        if (!admissionController.tryAdmit()) {
+            long retryAfterMs = admissionController.retryAfterMillis();
+            return reject(connection,
+                    "{\"error\":\"Server busy\",\"retryAfterMs\":" + retryAfterMs + "}",
+                    new CloseReason(CloseCodes.TRY_AGAIN_LATER, "retry-after-ms=" + retryAfterMs));
+        }
 
-            io.jsonwebtoken.Jws<io.jsonwebtoken.Claims> jws = parser.parseSignedClaims(token);
-            io.jsonwebtoken.Claims claims = jws.getPayload();
+        return admissionController.runHandshake(() -> jwtVerifier.verify(token))
+                .onItemOrFailure().transformToUni((verified, failure) -> {
+                    if (failure != null) {
+                        admissionController.release();
+                        LOG.severe("WebSocket connection rejected: Invalid token - " + failure.getMessage());
+                        return reject(connection, "{\"error\":\"Invalid token\"}", CloseReason.NORMAL);
+                    }
 
-            UUID userId = UUID.fromString(claims.getSubject());
-            String name = claims.get("name", String.class);
+                    // The client may have gone while the token was verified; onClose found no session then
+                    if (connection.isClosed()) {
+                        admissionController.release();
+                        LOG.info("WebSocket closed during handshake for user: " + verified.userId());
+                        return Uni.createFrom().voidItem();
+                    }
 
-            UserSession session = new UserSession(userId, name);
-            sessions.put(connection.id(), session);
-            userConnections.put(userId, connection);
+                    UUID userId = verified.userId();
+                    String name = verified.name();
+
+                    // Clients opt in to batched delivery with ?batch=true and to acknowledged delivery with ?ack=true
+                    boolean batched = webSocketConfig.getCoalesceWindowMs() > 0
+                            && "true".equals(extractQueryParam(connection, "batch"));
+                    boolean acknowledged = "true".equals(extractQueryParam(connection, "ack"));
+                    OutboundQueue outbound = new OutboundQueue(connection, webSocketConfig, webSocketMetrics,
+                            batched ? vertx : null, acknowledged);
+                    deliveryTracker.register(outbound);
+                    UserSession session = new UserSession(userId, name, ConcurrentHashMap.newKeySet(), outbound,
+                            heartbeatWheel.register(connection));
+                    sessions.put(connection.id(), session);
+                    addUserConnection(userId, connection);
+                    // Closed between the check above and the registration: undo it unless onClose already did
+                    if (connection.isClosed()) {
+                        if (sessions.remove(connection.id(), session)) {
+                            releaseSession(connection, session);
+                        }
+                        return Uni.createFrom().voidItem();
+                    }
 
-            LOG.info("WebSocket opened for user: " + userId + " (" + name + ")");
+                    LOG.info("WebSocket opened for user: " + userId + " (" + name + ")");
 
-            // Setup connection and broadcast presence
-            return Uni.createFrom().voidItem()
-                    .chain(() -> redisService.updatePresence(userId))
-                    .invoke(() -> LOG.info("Presence updated for user: " + userId))
-                    .chain(() -> loadUserRooms(userId, connection))
-                    .replaceWithVoid();
+                    // Setup connection and broadcast presence
+                    return Uni.createFrom().voidItem()
+                            .chain(() -> redisService.updatePresence(userId))
+                            .invoke(() -> LOG.info("Presence updated for user: " + userId))
+                            .chain(() -> loadUserRooms(userId, connection))
+                            .replaceWithVoid();
+                });
+    }
 
-        } catch (Exception e) {
-            LOG.severe("WebSocket connection rejected: Invalid token - " + e.getMessage());
-            connection.sendText("{\"error\":\"Invalid token\"}");
-            connection.close();
-            return Uni.createFrom().voidItem();
-        }
+    private Uni<Void> reject(WebSocketConnection connection, String error, CloseReason reason) {
+        return connection.sendText(error)
+                .onFailure().recoverWithNull()
+                .chain(() -> connection.close(reason));
     }
 
-    private String extractTokenFromQuery(WebSocketConnection connection) {
+    private String extractQueryParam(WebSocketConnection connection, String name) {
         try {
             String queryString = connection.handshakeRequest().query();
             if (queryString != null && !queryString.isEmpty()) {
                 String[] params = queryString.split("&");
                 for (String param : params) {
                     String[] keyValue = param.split("=", 2);
-                    if (keyValue.length == 2 && "token".equals(keyValue[0])) {
+                    if (keyValue.length == 2 && name.equals(keyValue[0])) {
                         return java.net.URLDecoder.decode(keyValue[1], java.nio.charset.StandardCharsets.UTF_8);
                     }
                 }
             }
         } catch (Exception e) {
-            LOG.warning("Failed to extract token from query: " + e.getMessage());
+            LOG.warning("Failed to extract " + name + " from query: " + e.getMessage());
         }
         return null;
     }
@@ -115,18 +226,15 @@ public class ChatWebSocketHandler {
                 .invoke(rowSet -> {
                     for (var row : rowSet) {
                         UUID roomId = row.getUUID("room_id");
-                        roomConnections.computeIfAbsent(roomId, k -> new ConcurrentHashMap<>())
-                                .put(connection.id(), connection);
+                        if (!joinRoom(roomId, connection)) {
+                            return;
+                        }
                         LOG.info("Added connection to room: " + roomId);
 
                         // Send PRESENCE event directly to this connection immediately
                         String presenceEvent = createPresenceEvent(userId, name, true, roomId);
-                        try {
-                            connection.sendText(presenceEvent);
-                            LOG.info("Sent PRESENCE event directly to connection for room: " + roomId);
-                        } catch (Exception e) {
-                            LOG.warning("Failed to send PRESENCE to connection: " + e.getMessage());
-                        }
+                        send(connection, new OutboundFrame(presenceEvent));
+                        LOG.info("Sent PRESENCE event directly to connection for room: " + roomId);
                     }
                 })
                 .call(rowSet -> {
@@ -152,35 +260,21 @@ public class ChatWebSocketHandler {
     /**
      * Broadcast presence event to all rooms the user is in via Redis pub/sub.
      * This ensures presence events are delivered to all connected clients across all server instances.
+     * The room set comes from the session snapshot, so this does no database work.
      */
-    private Uni<Void> broadcastPresenceToRooms(UUID userId, String name, boolean online) {
-        LOG.info("Broadcasting PRESENCE event for user " + userId + " (" + name + ") status=" + (online ? "online" : "offline"));
-
-        // Use pgPool directly to avoid Hibernate Reactive session requirement
-        String sql = "SELECT room_id FROM room_participants WHERE user_id = $1";
-        return pgPool.preparedQuery(sql).execute(io.vertx.mutiny.sqlclient.Tuple.of(userId))
-                .onItem().transform(rowSet -> {
-                    LOG.info("User " + userId + " is in " + rowSet.size() + " rooms for PRESENCE broadcast");
-                    return rowSet;
-                })
-                .call(rowSet -> {
-                    if (rowSet.size() == 0) {
-                        return Uni.createFrom().voidItem();
-                    }
-                    LOG.info("Broadcasting to " + rowSet.size() + " rooms");
-
-                    Uni<Void> uni = Uni.createFrom().voidItem();
-                    for (var row : rowSet) {
-                        UUID roomId = row.getUUID("room_id");
-                        String presenceEvent = createPresenceEvent(userId, name, online, roomId);
-                        uni = uni.chain(() -> {
-                            LOG.info("Publishing PRESENCE to room: " + roomId);
-                            return redisService.publishPresence(roomId, presenceEvent);
-                        });
-                    }
-                    return uni;
-                })
-                .replaceWithVoid();
+    private Uni<Void> broadcastPresenceToRooms(UUID userId, String name, boolean online, Set<UUID> rooms) {
+        LOG.info("Broadcasting PRESENCE event for user " + userId + " (" + name + ") status=" + (online ? "online" : "offline")
+                + " to " + rooms.size() + " rooms");
+
+        Uni<Void> uni = Uni.createFrom().voidItem();
+        for (UUID roomId : rooms) {
+            String presenceEvent = createPresenceEvent(userId, name, online, roomId);
+            uni = uni.chain(() -> {
+                LOG.info("Publishing PRESENCE to room: " + roomId);
+                return redisService.publishPresence(roomId, presenceEvent);
+            });
+        }
+        return uni;
     }
 
     /**
@@ -206,27 +300,6 @@ public class ChatWebSocketHandler {
         }
     }
 
-    private java.security.interfaces.RSAPublicKey readPublicKey() {
-        try {
-            java.io.InputStream is = getClass().getClassLoader().getResourceAsStream("keys/public-key.pem");
-            if (is == null) {
-                throw new RuntimeException("Public key not found");
-            }
-            String key = new String(is.readAllBytes(), java.nio.charset.StandardCharsets.UTF_8);
-            key = key.replace("-----BEGIN PUBLIC KEY-----", "")
-                     .replace("-----END PUBLIC KEY-----", "")
-                     .replaceAll("\\s", "");
-
-            java.security.KeyFactory keyFactory = java.security.KeyFactory.getInstance("RSA");
-            java.security.spec.X509EncodedKeySpec keySpec = new java.security.spec.X509EncodedKeySpec(
-                java.util.Base64.getDecoder().decode(key)
-            );
-            return (java.security.interfaces.RSAPublicKey) keyFactory.generatePublic(keySpec);
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to read public key", e);
-        }
-    }
-
     private UserSession getSession(WebSocketConnection connection) {
         return sessions.get(connection.id());
     }
@@ -240,57 +313,125 @@ public class ChatWebSocketHandler {
             return Uni.createFrom().item("{\"error\":\"Not authenticated\"}");
         }
 
-        UUID userId = session.userId;
-        LOG.info("Received message from user: " + userId + ", message: " + message);
+        session.heartbeat().touch();
+        LOG.info("Received message from user: " + session.userId + ", message: " + message);
 
+        InboundEvent event;
         try {
-            JsonNode json = objectMapper.readTree(message);
-            String eventType = json.has("event") ? json.get("event").asText() : "";
-            JsonNode data = json.has("data") ? json.get("data") : null;
+            event = decoder.decode(message);
+        } catch (Exception e) {
+            LOG.severe("Error parsing message: " + e.getMessage());
+            return Uni.createFrom().item("{\"error\":\"Invalid message\"}");
+        }
+        return dispatch(event, session.userId, connection);
+    }
+
+    /**
+     * Binary frames carry the same envelope, UTF-8 JSON for nexus.json.binary, CBOR
+     * for nexus.cbor or a DeflateCodec frame for nexus.json.deflate, and are answered
+     * in the connection's own format.
+     */
+    @OnBinaryMessage
+    public Uni<Buffer> onBinaryMessage(Buffer message, WebSocketConnection connection) {
+        WireFormat format = WireFormat.of(connection);
+        UserSession session = getSession(connection);
+
+        Uni<String> reply;
+        if (session == null) {
+            LOG.warning("Received message from unauthenticated connection");
+            reply = Uni.createFrom().item("{\"error\":\"Not authenticated\"}");
+        } else {
+            session.heartbeat().touch();
+            InboundEvent event = null;
+            try {
+                event = switch (format) {
+                    case CBOR -> decoder.decodeCbor(message.getBytes());
+                    case JSON_DEFLATE -> decoder.decodeJson(
+                            DeflateCodec.decode(message.getBytes(), webSocketConfig.getCompressionMaxInflatedBytes()));
+                    default -> decoder.decodeJson(message.getBytes());
+                };
+            } catch (Exception e) {
+                LOG.severe("Error decoding binary message: " + e.getMessage());
+            }
+            reply = event != null
+                    ? dispatch(event, session.userId, connection)
+                    : Uni.createFrom().item("{\"error\":\"Invalid message\"}");
+        }
+        return reply.map(text -> switch (format) {
+            case CBOR -> Buffer.buffer(CborCodec.fromJson(text));
+            case JSON_DEFLATE -> Buffer.buffer(DeflateCodec.encode(
+                    text.getBytes(StandardCharsets.UTF_8), webSocketConfig.getCompressionMinBytes()));
+            default -> Buffer.buffer(text);
+        });
+    }
+
+    /**
+     * Charge the user's rate limit and handle the event. Room limits are charged by the
+     * handlers once membership is authorized.
+     */
+    private Uni<String> dispatch(InboundEvent event, UUID userId, WebSocketConnection connection) {
+        if (!rateLimiter.tryAcquire(event.event(), userId)) {
+            return Uni.createFrom().item(rateLimitedError(event.event()));
+        }
+        return handle(event, userId, connection);
+    }
 
-            switch (eventType) {
+    private static String rateLimitedError(String event) {
+        return "{\"error\":\"Rate limited\",\"event\":\"" + event + "\"}";
+    }
+
+    private Uni<String> handle(InboundEvent event, UUID userId, WebSocketConnection connection) {
+        try {
+            switch (event.event()) {
                 case "SEND_MSG":
-                    return handleSendMessage(data, userId, connection);
+                    return handleSendMessage((SendMessageData) event.data(), userId, connection);
 
                 case "TYPING":
-                    return handleTyping(data, userId, connection)
+                    return handleTyping((TypingData) event.data(), userId, connection)
                             .replaceWith("{\"status\":\"typing_processed\"}");
 
                 case "SIGNAL_SDP":
-                    return handleWebRTCSignal(data, userId, connection)
+                    return handleWebRTCSignal((SignalSdpData) event.data(), userId, connection)
                             .replaceWith("{\"status\":\"signal_processed\"}");
 
                 case "SIGNAL_ICE":
-                    return handleSignalIce(data, userId, connection)
+                    return handleSignalIce((SignalIceData) event.data(), userId, connection)
                             .replaceWith("{\"status\":\"ice_processed\"}");
 
                 case "ACK":
-                    return handleAck(data, userId, connection)
+                    return handleAck((AckData) event.data(), userId, connection)
                             .replaceWith("{\"status\":\"ack_processed\"}");
 
+                case "RESUME":
+                    return handleResume((ResumeData) event.data(), userId, connection)
+                            .replaceWith("{\"status\":\"resume_processed\"}");
+
+                case "READ":
+                    return handleRead((ReadData) event.data(), userId, connection)
+                            .replaceWith("{\"status\":\"read_processed\"}");
+
                 default:
-                    LOG.warning("Unknown event type: " + eventType);
+                    LOG.warning("Unknown event type: " + event.event());
                     return Uni.createFrom().item("{\"error\":\"Unknown event\"}");
             }
         } catch (Exception e) {
-            LOG.severe("Error parsing message: " + e.getMessage());
+            LOG.severe("Error handling message: " + e.getMessage());
             e.printStackTrace();
             return Uni.createFrom().item("{\"error\":\"Invalid message\"}");
         }
     }
 
-    private Uni<String> handleSendMessage(JsonNode data, UUID userId, WebSocketConnection connection) {
+    private Uni<String> handleSendMessage(SendMessageData data, UUID userId, WebSocketConnection connection) {
         try {
             if (data == null) {
                 LOG.warning("SEND_MSG: data is null");
                 return Uni.createFrom().item("{\"error\":\"No data\"}");
             }
 
-            UUID roomId = data.has("roomId") ? UUID.fromString(data.get("roomId").asText()) : null;
-            String type = data.has("type") ? data.get("type").asText() : "TEXT";
-            String contentText = data.has("contentText") ? data.get("contentText").asText() : null;
-            String contentMeta = data.has("contentMeta") && !data.get("contentMeta").isNull()
-                ? data.get("contentMeta").toString() : null;
+            UUID roomId = data.getRoomId();
+            String type = data.getType() != null ? data.getType() : "TEXT";
+            String contentText = data.getContentText();
+            String contentMeta = data.getContentMeta();
 
             if (roomId == null) {
                 LOG.warning("SEND_MSG: roomId is required");
@@ -299,27 +440,55 @@ public class ChatWebSocketHandler {
 
             LOG.info("Handling SEND_MSG: roomId=" + roomId + ", type=" + type + ", userId=" + userId);
 
-            UUID messageId = UUID.randomUUID();
-            String insertSql = """
-                INSERT INTO messages (id, room_id, sender_id, type, content_text, content_meta, created_at)
-                VALUES ($1, $2, $3, $4, $5, $6, now())
-                RETURNING id, room_id, sender_id, type, content_text, created_at
-                """;
+            return authorizeRoom(roomId, userId, connection)
+                    .chain(member -> {
+                        if (!member) {
+                            LOG.warning("SEND_MSG rejected: user " + userId + " is not in room " + roomId);
+                            return Uni.createFrom().item("{\"error\":\"Not a member of this room\"}");
+                        }
+                        if (!rateLimiter.tryAcquireRoom("SEND_MSG", userId, roomId)) {
+                            return Uni.createFrom().item(rateLimitedError("SEND_MSG"));
+                        }
+                        return rateLimiter.tryAcquireGlobal("SEND_MSG", userId, roomId)
+                                .chain(allowed -> allowed
+                                        ? persistMessage(roomId, type, contentText, contentMeta, data.getClientRef(), userId)
+                                        : Uni.createFrom().item(rateLimitedError("SEND_MSG")));
+                    });
 
-            Tuple params = Tuple.of(messageId, roomId, userId, type,
-                contentText != null ? contentText : "", contentMeta);
+        } catch (Exception e) {
+            LOG.severe("Error in handleSendMessage: " + e.getMessage());
+            e.printStackTrace();
+            return Uni.createFrom().item("{\"error\":\"" + e.getMessage() + "\"}");
+        }
+    }
 
-            LOG.info("Executing SQL: " + insertSql);
+    private Uni<String> persistMessage(UUID roomId, String type, String contentText, String contentMeta,
+                                       UUID clientRef, UUID userId) {
+        try {
+            if (clientRef != null) {
+                String sent = clientRefCache.get(clientRef, userId);
+                if (sent != null) {
+                    LOG.info("SEND_MSG retry for clientRef " + clientRef + " answered from cache");
+                    return Uni.createFrom().item(sent);
+                }
+            }
 
-            return pgPool.preparedQuery(insertSql).execute(params)
-                    .onItem().transform(rowSet -> {
-                        LOG.info("SQL executed, rowSet size: " + rowSet.size());
-                        if (!rowSet.iterator().hasNext()) {
+            UUID messageId = UUID.randomUUID();
+            Tuple params = Tuple.of(messageId, roomId, userId, type,
+                contentText != null ? contentText : "", contentMeta)
+                .addUUID(clientRef);
+
+            return messageWriter.insert(params)
+                    .chain(row -> {
+                        if (row == null) {
+                            if (clientRef != null) {
+                                // A retry that reached the database: answer with the original message
+                                return findByClientRef(clientRef, userId);
+                            }
                             LOG.warning("No rows returned from SQL");
-                            return "{\"error\":\"Failed to save message\"}";
+                            return Uni.createFrom().item("{\"error\":\"Failed to save message\"}");
                         }
 
-                        var row = rowSet.iterator().next();
                         LOG.info("Message persisted: " + row.getUUID("id"));
 
                         String eventJson = createNewMessageEvent(
@@ -330,6 +499,12 @@ public class ChatWebSocketHandler {
                             row.getString("content_text"),
                             row.getLocalDateTime("created_at").toString()
                         );
+                        if (clientRef != null) {
+                            clientRefCache.put(clientRef, userId, eventJson);
+                        }
+                        roomActivityWriter.record(roomId, row.getString("type"), row.getString("content_text"),
+                            row.getOffsetDateTime("created_at"));
+                        incrementUnread(roomId, userId);
 
                         // Broadcast to Redis async (fire and forget)
                         redisService.publishToRoom(roomId, eventJson)
@@ -338,7 +513,7 @@ public class ChatWebSocketHandler {
                                 failure -> LOG.severe("Redis publish failed: " + failure.getMessage())
                             );
 
-                        return eventJson;
+                        return Uni.createFrom().item(eventJson);
                     })
                     .onFailure().invoke(e -> {
                         LOG.severe("SQL execution failed: " + e.getMessage());
@@ -356,19 +531,17 @@ public class ChatWebSocketHandler {
         }
     }
 
-    private Uni<Void> handleTyping(JsonNode data, UUID userId, WebSocketConnection connection) {
+    private Uni<Void> handleTyping(TypingData data, UUID userId, WebSocketConnection connection) {
         try {
-            UUID roomId = data.has("roomId") ? UUID.fromString(data.get("roomId").asText()) : null;
-            boolean isTyping = data.has("isTyping") ? data.get("isTyping").asBoolean() : false;
+            UUID roomId = data != null ? data.getRoomId() : null;
+            boolean isTyping = data != null && data.isTyping();
 
             if (roomId != null) {
-                LOG.info("Handling TYPING: roomId=" + roomId + ", isTyping=" + isTyping);
-                TypingData typingData = new TypingData();
-                typingData.setRoomId(roomId);
-                typingData.setTyping(isTyping);
-                ChatEvent event = new ChatEvent("TYPING", typingData);
-                event.setTraceId(UUID.randomUUID());
-                return redisService.publishTyping(roomId, objectMapper.writeValueAsString(event));
+                LOG.fine("Handling TYPING: roomId=" + roomId + ", isTyping=" + isTyping);
+                return authorizeRoom(roomId, userId, connection)
+                        .chain(member -> member
+                                ? typingThrottle.update(roomId, userId, isTyping)
+                                : Uni.createFrom().voidItem());
             }
             return Uni.createFrom().voidItem();
         } catch (Exception e) {
@@ -377,11 +550,14 @@ public class ChatWebSocketHandler {
         }
     }
 
-    private Uni<Void> handleWebRTCSignal(JsonNode data, UUID userId, WebSocketConnection connection) {
+    private Uni<Void> handleWebRTCSignal(SignalSdpData data, UUID userId, WebSocketConnection connection) {
         try {
-            UUID targetId = data.has("targetId") ? UUID.fromString(data.get("targetId").asText()) : null;
-            String type = data.has("type") ? data.get("type").asText() : null;
-            String sdp = data.has("sdp") ? data.get("sdp").asText() : null;
+            if (data == null) {
+                return Uni.createFrom().voidItem();
+            }
+            UUID targetId = data.getTargetId();
+            String type = data.getType();
+            String sdp = data.getSdp();
 
             if (targetId != null && type != null) {
                 LOG.info("Handling SIGNAL_SDP: targetId=" + targetId + ", type=" + type);
@@ -405,16 +581,14 @@ public class ChatWebSocketHandler {
         }
     }
 
-    private Uni<Void> handleSignalIce(JsonNode data, UUID userId, WebSocketConnection connection) {
+    private Uni<Void> handleSignalIce(SignalIceData data, UUID userId, WebSocketConnection connection) {
         try {
-            UUID targetId = data.has("targetId") ? UUID.fromString(data.get("targetId").asText()) : null;
-            String candidate = data.has("candidate") ? data.get("candidate").asText() : null;
+            UUID targetId = data != null ? data.getTargetId() : null;
+            String candidate = data != null ? data.getCandidate() : null;
 
             if (targetId != null && candidate != null) {
-                SignalIceData iceData = new SignalIceData();
-                iceData.setTargetId(targetId);
-                iceData.setCandidate(candidate);
-                ChatEvent event = new ChatEvent("SIGNAL_ICE", iceData);
+                // Relay the decoded candidate as-is, including sdpMid and sdpMLineIndex
+                ChatEvent event = new ChatEvent("SIGNAL_ICE", data);
                 event.setTraceId(UUID.randomUUID());
                 return redisService.publishToUser(targetId, objectMapper.writeValueAsString(event));
             }
@@ -453,16 +627,223 @@ public class ChatWebSocketHandler {
             dataNode.put("reason", reason);
 
             eventNode.set("data", dataNode);
-            connection.sendText(objectMapper.writeValueAsString(eventNode));
+            send(connection, new OutboundFrame(objectMapper.writeValueAsString(eventNode)));
         } catch (Exception e) {
             LOG.severe("Error sending CALL_REJECTED event: " + e.getMessage());
         }
     }
 
-    private Uni<Void> handleAck(JsonNode data, UUID userId, WebSocketConnection connection) {
+    private Uni<Void> handleAck(AckData data, UUID userId, WebSocketConnection connection) {
+        UserSession session = getSession(connection);
+        if (data != null && data.getSeq() != null && session != null) {
+            session.outbound().acknowledge(data.getSeq());
+        }
         return Uni.createFrom().voidItem();
     }
 
+    private Uni<Void> handleRead(ReadData data, UUID userId, WebSocketConnection connection) {
+        UUID roomId = data != null ? data.getRoomId() : null;
+        UUID messageId = data != null ? data.getMessageId() : null;
+        if (roomId == null || messageId == null) {
+            return Uni.createFrom().voidItem();
+        }
+        return authorizeRoom(roomId, userId, connection)
+                .chain(member -> {
+                    if (!member) {
+                        return Uni.createFrom().voidItem();
+                    }
+                    readStateWriter.record(roomId, userId, messageId);
+                    return redisService.resetUnread(roomId, userId)
+                            .onFailure().invoke(failure ->
+                                LOG.warning("Failed to reset unread count: " + failure.getMessage()))
+                            .onFailure().recoverWithNull();
+                });
+    }
+
+    /**
+     * Count a new message as unread for every participant except its sender, in one
+     * Redis call (fire and forget).
+     */
+    private void incrementUnread(UUID roomId, UUID senderId) {
+        membershipCache.members(roomId)
+            .chain(members -> {
+                List<UUID> recipients = new ArrayList<>(members);
+                recipients.remove(senderId);
+                return redisService.incrementUnread(roomId, recipients);
+            })
+            .subscribe().with(
+                unused -> {},
+                failure -> LOG.warning("Unread fan-out failed for room " + roomId + ": " + failure.getMessage())
+            );
+    }
+
+    /**
+     * Whether the user may act in the room. The session's room set answers in O(1); a room
+     * missing from it falls back to the cached room_participants lookup, and a confirmed
+     * membership is added to the session so later events stay in memory.
+     */
+    private Uni<Boolean> authorizeRoom(UUID roomId, UUID userId, WebSocketConnection connection) {
+        UserSession session = getSession(connection);
+        if (session != null && session.rooms().contains(roomId)) {
+            return Uni.createFrom().item(true);
+        }
+        return membershipCache.isMember(roomId, userId)
+                .invoke(member -> {
+                    if (member) {
+                        joinRoom(roomId, connection);
+                    }
+                });
+    }
+
+    /**
+     * NEW_MESSAGE event of the message this sender already created with {@code clientRef}.
+     * The original was broadcast when it was created, so it is not broadcast again.
+     */
+    private Uni<String> findByClientRef(UUID clientRef, UUID senderId) {
+        String sql = """
+            SELECT id, room_id, sender_id, type, content_text, created_at
+            FROM messages
+            WHERE client_ref = $1 AND sender_id = $2
+            """;
+        return pgPool.preparedQuery(sql).execute(Tuple.of(clientRef, senderId))
+                .map(rowSet -> {
+                    if (!rowSet.iterator().hasNext()) {
+                        LOG.warning("SEND_MSG: clientRef " + clientRef + " belongs to another sender");
+                        return "{\"error\":\"clientRef already used\"}";
+                    }
+                    var row = rowSet.iterator().next();
+                    String eventJson = createNewMessageEvent(
+                        row.getUUID("id"),
+                        row.getUUID("room_id"),
+                        row.getUUID("sender_id"),
+                        row.getString("type"),
+                        row.getString("content_text"),
+                        row.getLocalDateTime("created_at").toString()
+                    );
+                    clientRefCache.put(clientRef, senderId, eventJson);
+                    LOG.info("SEND_MSG retry for clientRef " + clientRef + " matched message " + row.getUUID("id"));
+                    return eventJson;
+                });
+    }
+
+    /**
+     * Stream the messages a reconnecting client missed, room by room, then RESUME_DONE.
+     * Live traffic is held until the history has been queued, so it always arrives after,
+     * also when several RESUMEs of one connection overlap.
+     */
+    private Uni<Void> handleResume(ResumeData data, UUID userId, WebSocketConnection connection) {
+        UserSession session = getSession(connection);
+        if (session == null || data == null || data.getCursors() == null) {
+            return Uni.createFrom().voidItem();
+        }
+
+        OutboundQueue outbound = session.outbound();
+        ArrayNode resumed = objectMapper.createArrayNode();
+        ArrayNode reset = objectMapper.createArrayNode();
+        outbound.hold();
+
+        Uni<Void> chain = Uni.createFrom().voidItem();
+        for (Map.Entry<UUID, UUID> cursor : data.getCursors().entrySet()) {
+            UUID roomId = cursor.getKey();
+            UUID lastMessageId = cursor.getValue();
+            if (roomId == null) {
+                continue;
+            }
+            if (!session.rooms().contains(roomId)) {
+                // Not resumable here; the client refetches the room instead
+                reset.add(roomId.toString());
+                continue;
+            }
+            chain = chain.chain(() -> resumeRoom(roomId, lastMessageId, outbound))
+                    .invoke(complete -> (complete ? resumed : reset).add(roomId.toString()))
+                    .replaceWithVoid();
+        }
+
+        return chain
+                .invoke(() -> {
+                    ObjectNode eventNode = objectMapper.createObjectNode();
+                    eventNode.put("event", "RESUME_DONE");
+                    eventNode.put("traceId", UUID.randomUUID().toString());
+                    ObjectNode dataNode = eventNode.putObject("data");
+                    dataNode.set("resumed", resumed);
+                    dataNode.set("reset", reset);
+                    outbound.offerBeforeHeld(new OutboundFrame(eventNode.toString()));
+                    LOG.info("Resumed " + resumed.size() + " rooms for user " + userId + ", " + reset.size() + " reset");
+                })
+                .onFailure().invoke(e -> LOG.severe("RESUME failed for user " + userId + ": " + e.getMessage()))
+                .onTermination().invoke(outbound::release);
+    }
+
+    /**
+     * Send the messages of one room after {@code lastMessageId} in RESUME_BATCH chunks.
+     * Emits false when the cursor is unknown or more than the resume limit was missed,
+     * in which case the client should refetch the room's history instead.
+     */
+    private Uni<Boolean> resumeRoom(UUID roomId, UUID lastMessageId, OutboundQueue outbound) {
+        if (lastMessageId == null) {
+            return Uni.createFrom().item(false);
+        }
+        String cursorSql = "SELECT created_at FROM messages WHERE id = $1 AND room_id = $2";
+        return pgPool.preparedQuery(cursorSql).execute(Tuple.of(lastMessageId, roomId))
+                .chain(rowSet -> {
+                    if (!rowSet.iterator().hasNext()) {
+                        return Uni.createFrom().item(false);
+                    }
+                    OffsetDateTime createdAt = rowSet.iterator().next().getOffsetDateTime("created_at");
+                    return resumeChunk(roomId, createdAt, lastMessageId, 0, outbound);
+                });
+    }
+
+    private Uni<Boolean> resumeChunk(UUID roomId, OffsetDateTime afterCreatedAt, UUID afterId, int sent,
+                                     OutboundQueue outbound) {
+        int chunkSize = webSocketConfig.getResumeChunkSize();
+        if (sent >= webSocketConfig.getResumeMaxMessages()) {
+            return Uni.createFrom().item(false);
+        }
+        // Keyset read in index order of idx_messages_room_history
+        String sql = """
+            SELECT id, room_id, sender_id, type, content_text, created_at
+            FROM messages
+            WHERE room_id = $1 AND created_at >= $2 AND (created_at, id) > ($2, $3)
+            ORDER BY created_at, id
+            LIMIT $4
+            """;
+        return pgPool.preparedQuery(sql).execute(Tuple.of(roomId, afterCreatedAt, afterId, chunkSize))
+                .chain(rowSet -> {
+                    if (rowSet.size() == 0) {
+                        return Uni.createFrom().item(true);
+                    }
+                    ObjectNode eventNode = objectMapper.createObjectNode();
+                    eventNode.put("event", "RESUME_BATCH");
+                    eventNode.put("traceId", UUID.randomUUID().toString());
+                    ObjectNode dataNode = eventNode.putObject("data");
+                    dataNode.put("roomId", roomId.toString());
+                    ArrayNode messages = dataNode.putArray("messages");
+
+                    OffsetDateTime lastCreatedAt = afterCreatedAt;
+                    UUID lastId = afterId;
+                    for (var row : rowSet) {
+                        ObjectNode message = messages.addObject();
+                        message.put("id", row.getUUID("id").toString());
+                        message.put("roomId", row.getUUID("room_id").toString());
+                        message.put("senderId", row.getUUID("sender_id").toString());
+                        message.put("type", row.getString("type"));
+                        if (row.getString("content_text") != null) {
+                            message.put("contentText", row.getString("content_text"));
+                        }
+                        message.put("createdAt", row.getLocalDateTime("created_at").toString());
+                        lastCreatedAt = row.getOffsetDateTime("created_at");
+                        lastId = row.getUUID("id");
+                    }
+                    outbound.offerBeforeHeld(new OutboundFrame(eventNode.toString()));
+
+                    if (rowSet.size() < chunkSize) {
+                        return Uni.createFrom().item(true);
+                    }
+                    return resumeChunk(roomId, lastCreatedAt, lastId, sent + rowSet.size(), outbound);
+                });
+    }
+
     private String createNewMessageEvent(UUID id, UUID roomId, UUID senderId, String type, String contentText, String createdAt) {
         try {
             ObjectNode eventNode = objectMapper.createObjectNode();
@@ -491,37 +872,13 @@ public class ChatWebSocketHandler {
     public void onClose(WebSocketConnection connection) {
         UserSession session = sessions.remove(connection.id());
         if (session != null) {
+            releaseSession(connection, session);
             UUID userId = session.userId;
-            userConnections.remove(userId, connection);
-
-            // Get rooms this connection was in before removing
-            var roomsIn = new java.util.ArrayList<UUID>();
-            for (var entry : roomConnections.entrySet()) {
-                if (entry.getValue().containsKey(connection.id())) {
-                    roomsIn.add(entry.getKey());
-                }
-            }
-
-            // Remove connection from all rooms
-            for (Map<String, WebSocketConnection> roomMap : roomConnections.values()) {
-                roomMap.remove(connection.id());
-            }
+            Set<UUID> roomsIn = session.rooms();
             LOG.info("WebSocket closed for user: " + userId);
 
-            // Send offline PRESENCE event directly to this connection before it closes
-            // This ensures the client knows they're going offline
-            for (UUID roomId : roomsIn) {
-                String presenceEvent = createPresenceEvent(userId, session.name, false, roomId);
-                try {
-                    connection.sendText(presenceEvent);
-                    LOG.info("Sent offline PRESENCE to closing connection for room: " + roomId);
-                } catch (Exception e) {
-                    LOG.warning("Failed to send offline PRESENCE to closing connection: " + e.getMessage());
-                }
-            }
-
             // Broadcast offline presence to all rooms user is in via Redis (for other users)
-            broadcastPresenceToRooms(userId, session.name, false).subscribe().with(
+            broadcastPresenceToRooms(userId, session.name, false, roomsIn).subscribe().with(
                 unused -> LOG.info("Offline presence broadcast for user: " + userId),
                 failure -> LOG.warning("Failed to broadcast offline presence: " + failure.getMessage())
             );
@@ -534,35 +891,203 @@ public class ChatWebSocketHandler {
         }
     }
 
+    /**
+     * Free everything a removed session holds: its admission slot, heartbeat, outbound queue,
+     * user entry and the room entries it joined, O(rooms of this connection).
+     */
+    private void releaseSession(WebSocketConnection connection, UserSession session) {
+        admissionController.release();
+        session.heartbeat().cancel();
+        deliveryTracker.unregister(session.outbound());
+        session.outbound().closed();
+        removeUserConnection(session.userId(), connection);
+        for (UUID roomId : session.rooms()) {
+            leaveRoom(roomId, connection);
+        }
+    }
+
+    /**
+     * Pongs answer the server's auto-pings and keep the connection alive.
+     */
+    @OnPongMessage
+    public void onPong(Buffer data, WebSocketConnection connection) {
+        UserSession session = getSession(connection);
+        if (session != null) {
+            session.heartbeat().touch();
+        }
+    }
+
     @OnError
     public void onError(Throwable error) {
         LOG.severe("WebSocket error: " + error.getMessage());
         error.printStackTrace();
     }
 
+    /**
+     * Send to every device the user has connected to this node.
+     */
     public static void sendToUser(UUID userId, String message) {
-        WebSocketConnection connection = userConnections.get(userId);
-        if (connection != null) {
-            try {
-                connection.sendText(message);
-            } catch (Exception e) {
-                LOG.warning("Failed to send message to user " + userId + ": " + e.getMessage());
+        WebSocketConnection[] connections = userConnections.get(userId);
+        if (connections != null) {
+            OutboundFrame frame = new OutboundFrame(message);
+            for (WebSocketConnection connection : connections) {
+                send(connection, frame);
             }
         }
     }
 
+    /**
+     * Send to every connection in the room on this node.
+     * The payload is encoded once and the same frame buffer is shared by all recipients.
+     */
     public static void broadcastToRoom(UUID roomId, String message) {
+        broadcastToRoom(roomId, new OutboundFrame(message));
+    }
+
+    public static void broadcastToRoom(UUID roomId, OutboundFrame frame) {
         Map<String, WebSocketConnection> connections = roomConnections.get(roomId);
         if (connections != null) {
             for (WebSocketConnection connection : connections.values()) {
-                try {
-                    connection.sendText(message);
-                } catch (Exception e) {
-                    LOG.warning("Failed to broadcast to room " + roomId + ": " + e.getMessage());
+                send(connection, frame);
+            }
+        }
+    }
+
+    /**
+     * Queue a frame on the connection's bounded outbound queue.
+     * A connection without a session has already closed, so the frame is dropped.
+     */
+    private static void send(WebSocketConnection connection, OutboundFrame frame) {
+        UserSession session = sessions.get(connection.id());
+        if (session != null) {
+            session.outbound().offer(frame);
+        }
+    }
+
+    /**
+     * Apply a room join/leave to every connection the user has on this node.
+     * Called by {@link tech.limaxs.chat.infra.redis.RedisPubSubListener} for membership:events.
+     */
+    public static void applyMembershipChange(UUID roomId, UUID userId, boolean joined) {
+        WebSocketConnection[] connections = userConnections.get(userId);
+        if (connections == null) {
+            return;
+        }
+        for (WebSocketConnection connection : connections) {
+            if (joined) {
+                joinRoom(roomId, connection);
+            } else {
+                UserSession session = sessions.get(connection.id());
+                if (session != null) {
+                    session.rooms().remove(roomId);
                 }
+                leaveRoom(roomId, connection);
             }
         }
     }
 
-    private static record UserSession(UUID userId, String name) {}
+    /**
+     * Register the connection in a room and in its session's room set.
+     * Returns false if the connection closed meanwhile, in which case nothing is registered.
+     */
+    private static boolean joinRoom(UUID roomId, WebSocketConnection connection) {
+        UserSession session = sessions.get(connection.id());
+        if (session == null) {
+            return false;
+        }
+        session.rooms().add(roomId);
+        boolean[] first = new boolean[1];
+        roomConnections.compute(roomId, (id, connections) -> {
+            first[0] = connections == null;
+            Map<String, WebSocketConnection> updated = connections != null ? connections : new ConcurrentHashMap<>();
+            updated.put(connection.id(), connection);
+            return updated;
+        });
+        if (first[0]) {
+            interestListener.roomInterestChanged(roomId);
+        }
+        // onClose may have run between the session lookup and the registration above
+        if (!sessions.containsKey(connection.id())) {
+            leaveRoom(roomId, connection);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Remove the connection from a room, dropping the room entry once it is empty.
+     */
+    private static void leaveRoom(UUID roomId, WebSocketConnection connection) {
+        Map<String, WebSocketConnection> remaining = roomConnections.computeIfPresent(roomId, (id, connections) -> {
+            connections.remove(connection.id());
+            return connections.isEmpty() ? null : connections;
+        });
+        if (remaining == null) {
+            interestListener.roomInterestChanged(roomId);
+        }
+    }
+
+    private static void addUserConnection(UUID userId, WebSocketConnection connection) {
+        WebSocketConnection[] connections = userConnections.merge(userId, new WebSocketConnection[]{connection}, (current, added) -> {
+            WebSocketConnection[] updated = Arrays.copyOf(current, current.length + 1);
+            updated[current.length] = connection;
+            return updated;
+        });
+        if (connections.length == 1) {
+            interestListener.userInterestChanged(userId);
+        }
+    }
+
+    private static void removeUserConnection(UUID userId, WebSocketConnection connection) {
+        WebSocketConnection[] remaining = userConnections.computeIfPresent(userId, (id, current) -> {
+            if (current.length == 1) {
+                return current[0] == connection ? null : current;
+            }
+            WebSocketConnection[] updated = new WebSocketConnection[current.length - 1];
+            int i = 0;
+            for (WebSocketConnection c : current) {
+                if (c != connection) {
+                    if (i == updated.length) {
+                        return current; // not registered
+                    }
+                    updated[i++] = c;
+                }
+            }
+            return updated;
+        });
+        if (remaining == null) {
+            interestListener.userInterestChanged(userId);
+        }
+    }
+
+    public static boolean hasRoomConnections(UUID roomId) {
+        return roomConnections.containsKey(roomId);
+    }
+
+    public static boolean hasUserConnections(UUID userId) {
+        return userConnections.containsKey(userId);
+    }
+
+    public static void setInterestListener(InterestListener listener) {
+        interestListener = listener;
+    }
+
+    /**
+     * Told when a room or user may have gained its first or lost its last connection on
+     * this node. Notifications can be duplicated or reordered; ask
+     * {@link #hasRoomConnections} and {@link #hasUserConnections} for the current state.
+     */
+    public interface InterestListener {
+        void roomInterestChanged(UUID roomId);
+
+        void userInterestChanged(UUID userId);
+    }
+
+    /**
+     * Per-connection state. {@code rooms} is the membership snapshot taken at open time and
+     * kept current by membership events; it is also the reverse index of the room entries
+     * this connection is registered in, so close only touches those rooms.
+     */
+    private static record UserSession(UUID userId, String name, Set<UUID> rooms, OutboundQueue outbound,
+                                      Heartbeat heartbeat) {}
 }
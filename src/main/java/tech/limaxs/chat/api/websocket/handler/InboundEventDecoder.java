@@ -0,0 +1,135 @@
+package tech.limaxs.chat.api.websocket.handler;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.StreamReadFeature;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import tech.limaxs.chat.api.websocket.dto.AckData;
+import tech.limaxs.chat.api.websocket.dto.ReadData;
+import tech.limaxs.chat.api.websocket.dto.ResumeData;
+import tech.limaxs.chat.api.websocket.dto.SendMessageData;
+import tech.limaxs.chat.api.websocket.dto.SignalIceData;
+import tech.limaxs.chat.api.websocket.dto.SignalSdpData;
+import tech.limaxs.chat.api.websocket.dto.TypingData;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Streaming decoder for inbound event envelopes.
+ *
+ * Walks the envelope with a {@link JsonParser} and binds {@code data} straight to the
+ * DTO for its event type using a cached {@link ObjectReader}; no {@link JsonNode} tree
+ * is built. If {@code data} arrives before {@code event}, it is buffered and bound
+ * once the type is known. Unknown events decode with null data.
+ */
+final class InboundEventDecoder {
+
+    private static final Map<String, Class<?>> DATA_TYPES = Map.of(
+            "SEND_MSG", SendMessageData.class,
+            "TYPING", TypingData.class,
+            "SIGNAL_SDP", SignalSdpData.class,
+            "SIGNAL_ICE", SignalIceData.class,
+            "ACK", AckData.class,
+            "RESUME", ResumeData.class,
+            "READ", ReadData.class
+    );
+
+    private final ObjectMapper jsonMapper;
+    private final ObjectMapper cborMapper;
+    private final Map<String, ObjectReader> jsonReaders;
+    private final Map<String, ObjectReader> cborReaders;
+
+    InboundEventDecoder() {
+        // Source locations let RawJsonDeserializer slice contentMeta out of the input
+        JsonFactory jsonFactory = JsonFactory.builder()
+                .enable(StreamReadFeature.INCLUDE_SOURCE_IN_LOCATION)
+                .build();
+        this.jsonMapper = JsonMapper.builder(jsonFactory)
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .build();
+        this.cborMapper = CBORMapper.builder()
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .build();
+        this.jsonReaders = readers(jsonMapper);
+        this.cborReaders = readers(cborMapper);
+    }
+
+    InboundEvent decode(String json) throws IOException {
+        try (JsonParser parser = jsonMapper.createParser(json)) {
+            return read(parser, jsonReaders);
+        }
+    }
+
+    InboundEvent decodeJson(byte[] json) throws IOException {
+        try (JsonParser parser = jsonMapper.createParser(json)) {
+            return read(parser, jsonReaders);
+        }
+    }
+
+    InboundEvent decodeCbor(byte[] cbor) throws IOException {
+        try (JsonParser parser = cborMapper.createParser(cbor)) {
+            return read(parser, cborReaders);
+        }
+    }
+
+    private InboundEvent read(JsonParser parser, Map<String, ObjectReader> readers) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new JsonParseException(parser, "Expected event envelope object");
+        }
+
+        String event = null;
+        Object data = null;
+        TokenBuffer bufferedData = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("event".equals(field)) {
+                event = parser.getValueAsString();
+            } else if ("data".equals(field) && value != JsonToken.VALUE_NULL) {
+                if (event != null) {
+                    data = readData(event, parser, readers);
+                } else {
+                    bufferedData = new TokenBuffer(parser);
+                    bufferedData.copyCurrentStructure(parser);
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+
+        if (bufferedData != null && event != null) {
+            try (JsonParser buffered = bufferedData.asParser(parser.getCodec())) {
+                buffered.nextToken();
+                data = readData(event, buffered, readers);
+            }
+        }
+        return new InboundEvent(event != null ? event : "", data);
+    }
+
+    private static Object readData(String event, JsonParser parser, Map<String, ObjectReader> readers) throws IOException {
+        ObjectReader reader = readers.get(event);
+        if (reader == null) {
+            parser.skipChildren();
+            return null;
+        }
+        return reader.readValue(parser);
+    }
+
+    private static Map<String, ObjectReader> readers(ObjectMapper mapper) {
+        Map<String, ObjectReader> readers = new HashMap<>();
+        DATA_TYPES.forEach((event, type) -> readers.put(event, mapper.readerFor(type)));
+        return Map.copyOf(readers);
+    }
+
+    record InboundEvent(String event, Object data) {}
+}
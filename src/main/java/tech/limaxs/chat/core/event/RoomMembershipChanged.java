@@ -0,0 +1,12 @@
+package tech.limaxs.chat.core.event;
+
+import io.quarkus.runtime.annotations.RegisterForReflection;
+
+import java.util.UUID;
+
+/**
+ * Fired when a user joins or leaves a room.
+ * Relayed to every node over Redis so open WebSocket sessions keep their room set current.
+ */
+@RegisterForReflection
+public record RoomMembershipChanged(UUID roomId, UUID userId, boolean joined) {}
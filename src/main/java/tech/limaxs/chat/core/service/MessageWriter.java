@@ -0,0 +1,129 @@
+package tech.limaxs.chat.core.service;
+
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.subscription.UniEmitter;
+import io.vertx.mutiny.pgclient.PgPool;
+import io.vertx.mutiny.sqlclient.Row;
+import io.vertx.mutiny.sqlclient.RowSet;
+import io.vertx.mutiny.sqlclient.Tuple;
+import jakarta.enterprise.context.ApplicationScoped;
+import tech.limaxs.chat.infra.config.WebSocketConfig;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Group-commit writer for SEND_MSG inserts.
+ *
+ * Inserts from all connections are queued and written as one pipelined
+ * {@code executeBatch}, one round trip and one commit for the whole batch. A batch is
+ * written at once while fewer than {@code max-in-flight} batches are running, so an
+ * idle node adds no delay. Under load, rows queue up behind the running batches and go
+ * out together, up to {@code max-batch-rows} per batch, as soon as one completes.
+ *
+ * If a batch fails, its rows are retried one by one so a single bad row only fails its own sender.
+ */
+@ApplicationScoped
+public class MessageWriter {
+
+    private static final Logger LOG = Logger.getLogger(MessageWriter.class.getName());
+
+    private static final String INSERT_SQL = """
+        INSERT INTO messages (id, room_id, sender_id, type, content_text, content_meta, client_ref, created_at)
+        VALUES ($1, $2, $3, $4, $5, $6::text::jsonb, $7, now())
+        ON CONFLICT (client_ref) DO NOTHING
+        RETURNING id, room_id, sender_id, type, content_text, created_at
+        """;
+
+    private final PgPool pgPool;
+    private final WebSocketConfig config;
+    private final Queue<PendingInsert> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    public MessageWriter(PgPool pgPool, WebSocketConfig config) {
+        this.pgPool = pgPool;
+        this.config = config;
+    }
+
+    /**
+     * Insert one message. Params are (id, room_id, sender_id, type, content_text,
+     * content_meta, client_ref). Emits the returned row, or null if client_ref already exists.
+     */
+    public Uni<Row> insert(Tuple params) {
+        return Uni.createFrom().emitter(emitter -> {
+            queue.add(new PendingInsert(params, emitter));
+            drain();
+        });
+    }
+
+    private void drain() {
+        while (!queue.isEmpty()) {
+            int running = inFlight.get();
+            if (running >= config.getMessageWriterMaxInFlight()) {
+                // A running batch drains the queue when it completes
+                return;
+            }
+            if (!inFlight.compareAndSet(running, running + 1)) {
+                continue;
+            }
+            List<PendingInsert> batch = new ArrayList<>();
+            PendingInsert pending;
+            while (batch.size() < config.getMessageWriterMaxBatchRows() && (pending = queue.poll()) != null) {
+                batch.add(pending);
+            }
+            if (batch.isEmpty()) {
+                inFlight.decrementAndGet();
+                continue;
+            }
+            write(batch);
+        }
+    }
+
+    private void write(List<PendingInsert> batch) {
+        List<Tuple> params = new ArrayList<>(batch.size());
+        for (PendingInsert pending : batch) {
+            params.add(pending.params());
+        }
+        pgPool.preparedQuery(INSERT_SQL).executeBatch(params).subscribe().with(
+            rowSet -> {
+                finish();
+                // executeBatch chains one result per tuple, in order
+                RowSet<Row> result = rowSet;
+                for (PendingInsert pending : batch) {
+                    pending.emitter().complete(firstRow(result));
+                    result = result != null ? result.next() : null;
+                }
+                LOG.fine("Wrote batch of " + batch.size() + " messages");
+            },
+            failure -> {
+                finish();
+                if (batch.size() == 1) {
+                    batch.get(0).emitter().fail(failure);
+                    return;
+                }
+                LOG.warning("Batch of " + batch.size() + " messages failed, retrying one by one: " + failure.getMessage());
+                for (PendingInsert pending : batch) {
+                    pgPool.preparedQuery(INSERT_SQL).execute(pending.params()).subscribe().with(
+                        rows -> pending.emitter().complete(firstRow(rows)),
+                        pending.emitter()::fail
+                    );
+                }
+            }
+        );
+    }
+
+    private void finish() {
+        inFlight.decrementAndGet();
+        drain();
+    }
+
+    private static Row firstRow(RowSet<Row> rowSet) {
+        return rowSet != null && rowSet.iterator().hasNext() ? rowSet.iterator().next() : null;
+    }
+
+    private record PendingInsert(Tuple params, UniEmitter<? super Row> emitter) {}
+}
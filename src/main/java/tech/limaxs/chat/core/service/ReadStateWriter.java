@@ -0,0 +1,70 @@
+package tech.limaxs.chat.core.service;
+
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.scheduler.Scheduled;
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.pgclient.PgPool;
+import io.vertx.mutiny.sqlclient.Tuple;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import tech.limaxs.chat.infra.config.WebSocketConfig;
+
+import java.util.Comparator;
+import java.util.UUID;
+
+/**
+ * Write-behind of read positions into {@code room_read_states}.
+ *
+ * READ events only replace the position of their (room, user) in memory, so a chat
+ * window reporting every message it shows costs one row write per flush. Positions
+ * are upserted every {@code chat.ws.read-state.flush-interval} as one
+ * {@code executeBatch}, and once more on shutdown. The upsert only stores messages of
+ * the room itself and never moves a position back to an older message, so READ events
+ * arriving out of order or from several nodes cannot rewind it.
+ */
+@ApplicationScoped
+public class ReadStateWriter {
+
+    private static final String UPSERT_SQL = """
+        INSERT INTO room_read_states (room_id, user_id, last_read_message_id, updated_at)
+        SELECT m.room_id, $2, m.id, now() FROM messages m WHERE m.id = $3 AND m.room_id = $1
+        ON CONFLICT (room_id, user_id) DO UPDATE
+        SET last_read_message_id = EXCLUDED.last_read_message_id, updated_at = EXCLUDED.updated_at
+        WHERE room_read_states.last_read_message_id IS NULL
+           OR (SELECT created_at FROM messages WHERE id = room_read_states.last_read_message_id)
+              <= (SELECT created_at FROM messages WHERE id = EXCLUDED.last_read_message_id)
+           OR NOT EXISTS (SELECT 1 FROM messages WHERE id = room_read_states.last_read_message_id)
+        """;
+
+    private static final Comparator<Key> KEY_ORDER =
+            Comparator.comparing(Key::roomId).thenComparing(Key::userId);
+
+    private final WebSocketConfig config;
+    private final WriteBehindBuffer<Key, UUID> buffer;
+
+    public ReadStateWriter(PgPool pgPool, WebSocketConfig config) {
+        this.config = config;
+        this.buffer = new WriteBehindBuffer<>("read positions", pgPool, UPSERT_SQL, KEY_ORDER,
+                (pending, recorded) -> recorded,
+                (key, messageId) -> Tuple.of(key.roomId(), key.userId(), messageId));
+    }
+
+    /**
+     * Record that the user has read the room up to and including the message.
+     */
+    public void record(UUID roomId, UUID userId, UUID messageId) {
+        buffer.record(new Key(roomId, userId), messageId);
+    }
+
+    @Scheduled(every = "{chat.ws.read-state.flush-interval:1s}",
+               concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    Uni<Void> flush() {
+        return buffer.flush();
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        buffer.flushOnShutdown(config.getReadStateShutdownTimeoutMs());
+    }
+
+    private record Key(UUID roomId, UUID userId) {}
+}
@@ -0,0 +1,79 @@
+package tech.limaxs.chat.core.service;
+
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.scheduler.Scheduled;
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.pgclient.PgPool;
+import io.vertx.mutiny.sqlclient.Tuple;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import tech.limaxs.chat.infra.config.WebSocketConfig;
+
+import java.time.OffsetDateTime;
+import java.util.Comparator;
+import java.util.UUID;
+
+/**
+ * Write-behind of {@code rooms.last_message_preview} and {@code rooms.updated_at}.
+ *
+ * Sending a message only records it here; only the latest message per room is kept.
+ * Dirty rooms are written every {@code chat.ws.room-activity.flush-interval}, so a busy
+ * room costs one row update per flush instead of one per message. An update never moves
+ * {@code updated_at} backwards, so flushes from several nodes cannot overwrite a newer
+ * preview. Pending rooms are flushed on shutdown.
+ */
+@ApplicationScoped
+public class RoomActivityWriter {
+
+    private static final String UPDATE_SQL = """
+        UPDATE rooms SET last_message_preview = $2, updated_at = $3
+        WHERE id = $1 AND (updated_at IS NULL OR updated_at <= $3)
+        """;
+
+    private final WebSocketConfig config;
+    private final WriteBehindBuffer<UUID, Activity> buffer;
+
+    public RoomActivityWriter(PgPool pgPool, WebSocketConfig config) {
+        this.config = config;
+        this.buffer = new WriteBehindBuffer<>("room activities", pgPool, UPDATE_SQL, Comparator.<UUID>naturalOrder(),
+                RoomActivityWriter::latest,
+                (roomId, activity) -> Tuple.of(roomId, activity.preview(), activity.at()));
+    }
+
+    /**
+     * Record a message sent to a room. Older messages than the one already pending are ignored.
+     */
+    public void record(UUID roomId, String type, String contentText, OffsetDateTime createdAt) {
+        buffer.record(roomId, new Activity(preview(type, contentText), createdAt));
+    }
+
+    @Scheduled(every = "{chat.ws.room-activity.flush-interval:300ms}",
+               concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    Uni<Void> flush() {
+        return buffer.flush();
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        buffer.flushOnShutdown(config.getRoomActivityShutdownTimeoutMs());
+    }
+
+    /**
+     * Message text cut to the preview length on a code point boundary, or "[TYPE]" without text.
+     */
+    private String preview(String type, String contentText) {
+        if (contentText == null || contentText.isEmpty()) {
+            return "[" + type + "]";
+        }
+        int max = config.getRoomActivityMaxPreviewLength();
+        if (contentText.codePointCount(0, contentText.length()) <= max) {
+            return contentText;
+        }
+        return contentText.substring(0, contentText.offsetByCodePoints(0, max));
+    }
+
+    private static Activity latest(Activity current, Activity candidate) {
+        return candidate.at().isBefore(current.at()) ? current : candidate;
+    }
+
+    private record Activity(String preview, OffsetDateTime at) {}
+}
@@ -1,9 +1,11 @@
 package tech.limaxs.chat.core.service;
 
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Event;
 import jakarta.persistence.EntityManager;
 import jakarta.transaction.Transactional;
 import tech.limaxs.chat.api.rest.dto.ArchiveSummaryResponse;
+import tech.limaxs.chat.core.event.RoomMembershipChanged;
 import tech.limaxs.chat.core.model.*;
 import tech.limaxs.chat.core.repository.imperative.*;
 
@@ -25,6 +27,7 @@ public class RoomArchiveService {
     private final ArchivedMessageRepository archivedMessageRepository;
     private final ArchivedParticipantRepository archivedParticipantRepository;
     private final EntityManager entityManager;
+    private final Event<RoomMembershipChanged> membershipEvents;
 
     public RoomArchiveService(
             RoomRepository roomRepository,
@@ -34,7 +37,8 @@ public class RoomArchiveService {
             ArchivedRoomRepository archivedRoomRepository,
             ArchivedMessageRepository archivedMessageRepository,
             ArchivedParticipantRepository archivedParticipantRepository,
-            EntityManager entityManager) {
+            EntityManager entityManager,
+            Event<RoomMembershipChanged> membershipEvents) {
         this.roomRepository = roomRepository;
         this.messageRepository = messageRepository;
         this.participantRepository = participantRepository;
@@ -43,6 +47,7 @@ public class RoomArchiveService {
         this.archivedMessageRepository = archivedMessageRepository;
         this.archivedParticipantRepository = archivedParticipantRepository;
         this.entityManager = entityManager;
+        this.membershipEvents = membershipEvents;
     }
 
     @Transactional
@@ -129,6 +134,11 @@ public class RoomArchiveService {
         participantRepository.deleteByRoomId(roomUuid);
         LOG.info("Deleted participants from main table for room: " + roomUuid);
 
+        // Connected members drop the room from their sessions once this commits
+        for (RoomParticipant participant : participants) {
+            membershipEvents.fire(new RoomMembershipChanged(roomUuid, participant.getId().getUserId(), false));
+        }
+
         // Finally delete the room
         roomRepository.deleteById(roomUuid);
         LOG.info("Deleted room from main table: " + roomUuid);
@@ -0,0 +1,101 @@
+package tech.limaxs.chat.core.service;
+
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.pgclient.PgPool;
+import io.vertx.mutiny.sqlclient.Tuple;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+import java.util.function.BinaryOperator;
+import java.util.logging.Logger;
+
+/**
+ * Coalescing write-behind buffer: keeps one pending value per key and writes all dirty
+ * keys with one {@code executeBatch} per flush.
+ *
+ * Rows are written in key order, so concurrent flushes from several nodes lock rows in
+ * the same order and cannot deadlock. A failed flush puts its values back unless a newer
+ * one was recorded meanwhile. The owning bean schedules {@link #flush()} and calls
+ * {@link #flushOnShutdown} when the application stops.
+ */
+final class WriteBehindBuffer<K, V> {
+
+    private static final Logger LOG = Logger.getLogger(WriteBehindBuffer.class.getName());
+
+    private final String name;
+    private final PgPool pgPool;
+    private final String sql;
+    private final Comparator<K> keyOrder;
+    private final BinaryOperator<V> newer;
+    private final BiFunction<K, V, Tuple> params;
+    private final Map<K, V> dirty = new ConcurrentHashMap<>();
+
+    /**
+     * @param name     what the values are, for logging
+     * @param newer    given the pending and a recorded value, in that order, the one to keep
+     * @param params   statement parameters of one key and value
+     */
+    WriteBehindBuffer(String name, PgPool pgPool, String sql, Comparator<K> keyOrder,
+                      BinaryOperator<V> newer, BiFunction<K, V, Tuple> params) {
+        this.name = name;
+        this.pgPool = pgPool;
+        this.sql = sql;
+        this.keyOrder = keyOrder;
+        this.newer = newer;
+        this.params = params;
+    }
+
+    void record(K key, V value) {
+        dirty.merge(key, value, newer);
+    }
+
+    Uni<Void> flush() {
+        if (dirty.isEmpty()) {
+            return Uni.createFrom().voidItem();
+        }
+        List<Map.Entry<K, V>> batch = new ArrayList<>(dirty.size());
+        for (K key : dirty.keySet()) {
+            V value = dirty.remove(key);
+            if (value != null) {
+                batch.add(Map.entry(key, value));
+            }
+        }
+        batch.sort(Map.Entry.comparingByKey(keyOrder));
+
+        List<Tuple> tuples = new ArrayList<>(batch.size());
+        for (Map.Entry<K, V> entry : batch) {
+            tuples.add(params.apply(entry.getKey(), entry.getValue()));
+        }
+        return pgPool.preparedQuery(sql).executeBatch(tuples)
+                .invoke(() -> LOG.fine("Flushed " + batch.size() + " " + name))
+                .onFailure().invoke(failure -> {
+                    LOG.warning("Failed to flush " + batch.size() + " " + name + ", retrying: " + failure.getMessage());
+                    for (Map.Entry<K, V> entry : batch) {
+                        // A value recorded since the flush started is newer than the failed one
+                        dirty.merge(entry.getKey(), entry.getValue(), (current, failed) -> newer.apply(failed, current));
+                    }
+                })
+                .onFailure().recoverWithNull()
+                .replaceWithVoid();
+    }
+
+    /**
+     * Write what is pending, waiting at most {@code timeoutMs}.
+     */
+    void flushOnShutdown(long timeoutMs) {
+        if (dirty.isEmpty()) {
+            return;
+        }
+        LOG.info("Flushing " + dirty.size() + " " + name + " before shutdown");
+        try {
+            flush().await().atMost(Duration.ofMillis(timeoutMs));
+        } catch (Exception e) {
+            LOG.warning("Flush of " + name + " on shutdown failed: " + e.getMessage());
+        }
+    }
+}
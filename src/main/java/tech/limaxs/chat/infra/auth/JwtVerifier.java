@@ -0,0 +1,144 @@
+package tech.limaxs.chat.infra.auth;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.quarkus.runtime.Startup;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import tech.limaxs.chat.infra.config.WebSocketConfig;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyFactory;
+import java.security.MessageDigest;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Base64;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+/**
+ * Verifies RS256 access tokens presented on the WebSocket handshake.
+ *
+ * The public key and the required issuer are read from the same
+ * {@code mp.jwt.verify.publickey.location} and {@code mp.jwt.verify.issuer} that
+ * smallrye-jwt uses for REST, so a token accepted on one path is accepted on the other.
+ * The key and parser are built once at startup.
+ * Verified tokens are cached by SHA-256 hash until their {@code exp} claim, so a
+ * reconnecting client skips the RSA signature check.
+ */
+@Startup
+@ApplicationScoped
+public class JwtVerifier {
+
+    private static final Logger LOG = Logger.getLogger(JwtVerifier.class.getName());
+
+    private final JwtParser parser;
+    private final int cacheSize;
+    private final Map<String, VerifiedToken> verifiedTokens = new ConcurrentHashMap<>();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    public JwtVerifier(
+            @ConfigProperty(name = "mp.jwt.verify.publickey.location") String publicKeyLocation,
+            @ConfigProperty(name = "mp.jwt.verify.issuer") String issuer,
+            WebSocketConfig config) {
+        this.parser = Jwts.parser()
+                .verifyWith(readPublicKey(publicKeyLocation))
+                .requireIssuer(issuer)
+                .build();
+        this.cacheSize = config.getTokenCacheSize();
+        LOG.info("JWT verifier initialized from " + publicKeyLocation + " (token cache size " + cacheSize + ")");
+    }
+
+    /**
+     * Verify a compact JWS and return its subject and name.
+     * Throws {@link io.jsonwebtoken.JwtException} if the token is invalid, expired or
+     * from another issuer.
+     */
+    public VerifiedToken verify(String token) {
+        String key = hash(token);
+        long now = System.currentTimeMillis();
+
+        VerifiedToken cached = verifiedTokens.get(key);
+        if (cached != null) {
+            if (cached.expiresAt() > now) {
+                return cached;
+            }
+            verifiedTokens.remove(key, cached);
+        }
+
+        Claims claims = parser.parseSignedClaims(token).getPayload();
+        Date expiration = claims.getExpiration();
+        VerifiedToken verified = new VerifiedToken(
+                UUID.fromString(claims.getSubject()),
+                claims.get("name", String.class),
+                expiration != null ? expiration.getTime() : Long.MAX_VALUE);
+
+        // Tokens without exp are never cached, they would never leave the cache
+        if (expiration != null) {
+            if (verifiedTokens.size() >= cacheSize) {
+                evict(now);
+            }
+            verifiedTokens.put(key, verified);
+        }
+        return verified;
+    }
+
+    /**
+     * Drop expired entries, then arbitrary ones until the cache is back under its bound.
+     * Only one caller evicts at a time; the others skip and may briefly overshoot.
+     */
+    private void evict(long now) {
+        if (!evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            verifiedTokens.values().removeIf(token -> token.expiresAt() <= now);
+            Iterator<String> it = verifiedTokens.keySet().iterator();
+            while (verifiedTokens.size() >= cacheSize && it.hasNext()) {
+                it.next();
+                it.remove();
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    private static String hash(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hashed = digest.digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(hashed);
+        } catch (Exception e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static RSAPublicKey readPublicKey(String location) {
+        try (InputStream is = JwtVerifier.class.getClassLoader().getResourceAsStream(location)) {
+            if (is == null) {
+                throw new RuntimeException("Public key not found: " + location);
+            }
+            String key = new String(is.readAllBytes(), StandardCharsets.UTF_8);
+            key = key.replace("-----BEGIN PUBLIC KEY-----", "")
+                     .replace("-----END PUBLIC KEY-----", "")
+                     .replaceAll("\\s", "");
+
+            KeyFactory keyFactory = KeyFactory.getInstance("RSA");
+            X509EncodedKeySpec keySpec = new X509EncodedKeySpec(Base64.getDecoder().decode(key));
+            return (RSAPublicKey) keyFactory.generatePublic(keySpec);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to read public key", e);
+        }
+    }
+
+    public record VerifiedToken(UUID userId, String name, long expiresAt) {}
+}
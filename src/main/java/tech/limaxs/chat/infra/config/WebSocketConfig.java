@@ -0,0 +1,566 @@
+package tech.limaxs.chat.infra.config;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import jakarta.enterprise.context.ApplicationScoped;
+
+import java.util.Optional;
+
+@ApplicationScoped
+public class WebSocketConfig {
+
+    @ConfigProperty(name = "chat.ws.auth.token-cache-size", defaultValue = "50000")
+    private int tokenCacheSize;
+
+    @ConfigProperty(name = "chat.ws.admission.max-concurrent-handshakes", defaultValue = "256")
+    private int maxConcurrentHandshakes;
+
+    @ConfigProperty(name = "chat.ws.admission.max-connections", defaultValue = "100000")
+    private int maxConnections;
+
+    @ConfigProperty(name = "chat.ws.admission.retry-after-min-ms", defaultValue = "1000")
+    private long retryAfterMinMs;
+
+    @ConfigProperty(name = "chat.ws.admission.retry-after-jitter-ms", defaultValue = "9000")
+    private long retryAfterJitterMs;
+
+    @ConfigProperty(name = "chat.ws.outbound.high-watermark-bytes", defaultValue = "1048576")
+    private long outboundHighWatermarkBytes;
+
+    @ConfigProperty(name = "chat.ws.outbound.low-watermark-bytes", defaultValue = "262144")
+    private long outboundLowWatermarkBytes;
+
+    @ConfigProperty(name = "chat.ws.outbound.max-queued-bytes", defaultValue = "4194304")
+    private long outboundMaxQueuedBytes;
+
+    @ConfigProperty(name = "chat.ws.outbound.slow-consumer-grace-ms", defaultValue = "10000")
+    private long outboundSlowConsumerGraceMs;
+
+    @ConfigProperty(name = "chat.ws.compression.min-bytes", defaultValue = "1024")
+    private int compressionMinBytes;
+
+    @ConfigProperty(name = "chat.ws.compression.max-inflated-bytes", defaultValue = "1048576")
+    private int compressionMaxInflatedBytes;
+
+    @ConfigProperty(name = "chat.ws.coalesce.window-ms", defaultValue = "10")
+    private long coalesceWindowMs;
+
+    @ConfigProperty(name = "chat.ws.coalesce.max-batch-bytes", defaultValue = "65536")
+    private long coalesceMaxBatchBytes;
+
+    @ConfigProperty(name = "chat.ws.typing.min-interval-ms", defaultValue = "2000")
+    private long typingMinIntervalMs;
+
+    @ConfigProperty(name = "chat.ws.typing.expiry-ms", defaultValue = "6000")
+    private long typingExpiryMs;
+
+    @ConfigProperty(name = "chat.ws.rate-limit.enabled", defaultValue = "true")
+    private boolean rateLimitEnabled;
+
+    @ConfigProperty(name = "chat.ws.rate-limit.send-msg.user-per-second", defaultValue = "5")
+    private double sendMsgUserPerSecond;
+
+    @ConfigProperty(name = "chat.ws.rate-limit.send-msg.user-burst", defaultValue = "20")
+    private int sendMsgUserBurst;
+
+    @ConfigProperty(name = "chat.ws.rate-limit.send-msg.room-per-second", defaultValue = "50")
+    private double sendMsgRoomPerSecond;
+
+    @ConfigProperty(name = "chat.ws.rate-limit.send-msg.room-burst", defaultValue = "100")
+    private int sendMsgRoomBurst;
+
+    @ConfigProperty(name = "chat.ws.rate-limit.typing.user-per-second", defaultValue = "5")
+    private double typingUserPerSecond;
+
+    @ConfigProperty(name = "chat.ws.rate-limit.typing.user-burst", defaultValue = "10")
+    private int typingUserBurst;
+
+    @ConfigProperty(name = "chat.ws.rate-limit.signal.user-per-second", defaultValue = "50")
+    private double signalUserPerSecond;
+
+    @ConfigProperty(name = "chat.ws.rate-limit.signal.user-burst", defaultValue = "200")
+    private int signalUserBurst;
+
+    @ConfigProperty(name = "chat.ws.rate-limit.global.enabled", defaultValue = "false")
+    private boolean globalRateLimitEnabled;
+
+    @ConfigProperty(name = "chat.ws.rate-limit.global.send-msg.room-per-second", defaultValue = "200")
+    private int globalSendMsgRoomPerSecond;
+
+    @ConfigProperty(name = "chat.ws.heartbeat.timeout-ms", defaultValue = "30000")
+    private long heartbeatTimeoutMs;
+
+    @ConfigProperty(name = "chat.ws.heartbeat.tick-ms", defaultValue = "1000")
+    private long heartbeatTickMs;
+
+    @ConfigProperty(name = "chat.ws.heartbeat.wheel-size", defaultValue = "64")
+    private int heartbeatWheelSize;
+
+    @ConfigProperty(name = "chat.ws.ack.window-size", defaultValue = "256")
+    private int ackWindowSize;
+
+    @ConfigProperty(name = "chat.ws.ack.redeliver-after-ms", defaultValue = "5000")
+    private long ackRedeliverAfterMs;
+
+    @ConfigProperty(name = "chat.ws.ack.check-interval-ms", defaultValue = "1000")
+    private long ackCheckIntervalMs;
+
+    @ConfigProperty(name = "chat.ws.resume.chunk-size", defaultValue = "100")
+    private int resumeChunkSize;
+
+    @ConfigProperty(name = "chat.ws.resume.max-messages", defaultValue = "1000")
+    private int resumeMaxMessages;
+
+    @ConfigProperty(name = "chat.ws.idempotency.cache-size", defaultValue = "10000")
+    private int idempotencyCacheSize;
+
+    @ConfigProperty(name = "chat.ws.message-writer.max-batch-rows", defaultValue = "64")
+    private int messageWriterMaxBatchRows;
+
+    @ConfigProperty(name = "chat.ws.message-writer.max-in-flight", defaultValue = "4")
+    private int messageWriterMaxInFlight;
+
+    @ConfigProperty(name = "chat.ws.membership.cache-ttl-ms", defaultValue = "30000")
+    private long membershipCacheTtlMs;
+
+    @ConfigProperty(name = "chat.ws.membership.cache-size", defaultValue = "100000")
+    private int membershipCacheSize;
+
+    @ConfigProperty(name = "chat.ws.room-activity.max-preview-length", defaultValue = "200")
+    private int roomActivityMaxPreviewLength;
+
+    @ConfigProperty(name = "chat.ws.room-activity.shutdown-timeout-ms", defaultValue = "5000")
+    private long roomActivityShutdownTimeoutMs;
+
+    @ConfigProperty(name = "chat.ws.read-state.shutdown-timeout-ms", defaultValue = "5000")
+    private long readStateShutdownTimeoutMs;
+
+    @ConfigProperty(name = "chat.ws.subscriptions.batch-delay-ms", defaultValue = "5")
+    private long subscriptionsBatchDelayMs;
+
+    @ConfigProperty(name = "chat.ws.subscriptions.reconnect-delay-ms", defaultValue = "1000")
+    private long subscriptionsReconnectDelayMs;
+
+    @ConfigProperty(name = "chat.ws.transport", defaultValue = "pubsub")
+    private String transport;
+
+    @ConfigProperty(name = "chat.ws.streams.partitions", defaultValue = "16")
+    private int streamsPartitions;
+
+    @ConfigProperty(name = "chat.ws.streams.max-length", defaultValue = "100000")
+    private long streamsMaxLength;
+
+    @ConfigProperty(name = "chat.ws.streams.batch-size", defaultValue = "256")
+    private int streamsBatchSize;
+
+    @ConfigProperty(name = "chat.ws.streams.block-ms", defaultValue = "2000")
+    private long streamsBlockMs;
+
+    // No default: a shared fallback would put every node in one consumer group
+    @ConfigProperty(name = "chat.ws.streams.node-id")
+    private Optional<String> streamsNodeId;
+
+    public int getTokenCacheSize() {
+        return tokenCacheSize;
+    }
+
+    public void setTokenCacheSize(int tokenCacheSize) {
+        this.tokenCacheSize = tokenCacheSize;
+    }
+
+    public int getMaxConcurrentHandshakes() {
+        return maxConcurrentHandshakes;
+    }
+
+    public void setMaxConcurrentHandshakes(int maxConcurrentHandshakes) {
+        this.maxConcurrentHandshakes = maxConcurrentHandshakes;
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    public long getRetryAfterMinMs() {
+        return retryAfterMinMs;
+    }
+
+    public void setRetryAfterMinMs(long retryAfterMinMs) {
+        this.retryAfterMinMs = retryAfterMinMs;
+    }
+
+    public long getRetryAfterJitterMs() {
+        return retryAfterJitterMs;
+    }
+
+    public void setRetryAfterJitterMs(long retryAfterJitterMs) {
+        this.retryAfterJitterMs = retryAfterJitterMs;
+    }
+
+    public long getOutboundHighWatermarkBytes() {
+        return outboundHighWatermarkBytes;
+    }
+
+    public void setOutboundHighWatermarkBytes(long outboundHighWatermarkBytes) {
+        this.outboundHighWatermarkBytes = outboundHighWatermarkBytes;
+    }
+
+    public long getOutboundLowWatermarkBytes() {
+        return outboundLowWatermarkBytes;
+    }
+
+    public void setOutboundLowWatermarkBytes(long outboundLowWatermarkBytes) {
+        this.outboundLowWatermarkBytes = outboundLowWatermarkBytes;
+    }
+
+    public long getOutboundMaxQueuedBytes() {
+        return outboundMaxQueuedBytes;
+    }
+
+    public void setOutboundMaxQueuedBytes(long outboundMaxQueuedBytes) {
+        this.outboundMaxQueuedBytes = outboundMaxQueuedBytes;
+    }
+
+    public long getOutboundSlowConsumerGraceMs() {
+        return outboundSlowConsumerGraceMs;
+    }
+
+    public void setOutboundSlowConsumerGraceMs(long outboundSlowConsumerGraceMs) {
+        this.outboundSlowConsumerGraceMs = outboundSlowConsumerGraceMs;
+    }
+
+    public int getCompressionMinBytes() {
+        return compressionMinBytes;
+    }
+
+    public void setCompressionMinBytes(int compressionMinBytes) {
+        this.compressionMinBytes = compressionMinBytes;
+    }
+
+    public int getCompressionMaxInflatedBytes() {
+        return compressionMaxInflatedBytes;
+    }
+
+    public void setCompressionMaxInflatedBytes(int compressionMaxInflatedBytes) {
+        this.compressionMaxInflatedBytes = compressionMaxInflatedBytes;
+    }
+
+    public long getCoalesceWindowMs() {
+        return coalesceWindowMs;
+    }
+
+    public void setCoalesceWindowMs(long coalesceWindowMs) {
+        this.coalesceWindowMs = coalesceWindowMs;
+    }
+
+    public long getCoalesceMaxBatchBytes() {
+        return coalesceMaxBatchBytes;
+    }
+
+    public void setCoalesceMaxBatchBytes(long coalesceMaxBatchBytes) {
+        this.coalesceMaxBatchBytes = coalesceMaxBatchBytes;
+    }
+
+    public long getTypingMinIntervalMs() {
+        return typingMinIntervalMs;
+    }
+
+    public void setTypingMinIntervalMs(long typingMinIntervalMs) {
+        this.typingMinIntervalMs = typingMinIntervalMs;
+    }
+
+    public long getTypingExpiryMs() {
+        return typingExpiryMs;
+    }
+
+    public void setTypingExpiryMs(long typingExpiryMs) {
+        this.typingExpiryMs = typingExpiryMs;
+    }
+
+    public boolean isRateLimitEnabled() {
+        return rateLimitEnabled;
+    }
+
+    public void setRateLimitEnabled(boolean rateLimitEnabled) {
+        this.rateLimitEnabled = rateLimitEnabled;
+    }
+
+    public double getSendMsgUserPerSecond() {
+        return sendMsgUserPerSecond;
+    }
+
+    public void setSendMsgUserPerSecond(double sendMsgUserPerSecond) {
+        this.sendMsgUserPerSecond = sendMsgUserPerSecond;
+    }
+
+    public int getSendMsgUserBurst() {
+        return sendMsgUserBurst;
+    }
+
+    public void setSendMsgUserBurst(int sendMsgUserBurst) {
+        this.sendMsgUserBurst = sendMsgUserBurst;
+    }
+
+    public double getSendMsgRoomPerSecond() {
+        return sendMsgRoomPerSecond;
+    }
+
+    public void setSendMsgRoomPerSecond(double sendMsgRoomPerSecond) {
+        this.sendMsgRoomPerSecond = sendMsgRoomPerSecond;
+    }
+
+    public int getSendMsgRoomBurst() {
+        return sendMsgRoomBurst;
+    }
+
+    public void setSendMsgRoomBurst(int sendMsgRoomBurst) {
+        this.sendMsgRoomBurst = sendMsgRoomBurst;
+    }
+
+    public double getTypingUserPerSecond() {
+        return typingUserPerSecond;
+    }
+
+    public void setTypingUserPerSecond(double typingUserPerSecond) {
+        this.typingUserPerSecond = typingUserPerSecond;
+    }
+
+    public int getTypingUserBurst() {
+        return typingUserBurst;
+    }
+
+    public void setTypingUserBurst(int typingUserBurst) {
+        this.typingUserBurst = typingUserBurst;
+    }
+
+    public double getSignalUserPerSecond() {
+        return signalUserPerSecond;
+    }
+
+    public void setSignalUserPerSecond(double signalUserPerSecond) {
+        this.signalUserPerSecond = signalUserPerSecond;
+    }
+
+    public int getSignalUserBurst() {
+        return signalUserBurst;
+    }
+
+    public void setSignalUserBurst(int signalUserBurst) {
+        this.signalUserBurst = signalUserBurst;
+    }
+
+    public boolean isGlobalRateLimitEnabled() {
+        return globalRateLimitEnabled;
+    }
+
+    public void setGlobalRateLimitEnabled(boolean globalRateLimitEnabled) {
+        this.globalRateLimitEnabled = globalRateLimitEnabled;
+    }
+
+    public int getGlobalSendMsgRoomPerSecond() {
+        return globalSendMsgRoomPerSecond;
+    }
+
+    public void setGlobalSendMsgRoomPerSecond(int globalSendMsgRoomPerSecond) {
+        this.globalSendMsgRoomPerSecond = globalSendMsgRoomPerSecond;
+    }
+
+    public long getHeartbeatTimeoutMs() {
+        return heartbeatTimeoutMs;
+    }
+
+    public void setHeartbeatTimeoutMs(long heartbeatTimeoutMs) {
+        this.heartbeatTimeoutMs = heartbeatTimeoutMs;
+    }
+
+    public long getHeartbeatTickMs() {
+        return heartbeatTickMs;
+    }
+
+    public void setHeartbeatTickMs(long heartbeatTickMs) {
+        this.heartbeatTickMs = heartbeatTickMs;
+    }
+
+    public int getHeartbeatWheelSize() {
+        return heartbeatWheelSize;
+    }
+
+    public void setHeartbeatWheelSize(int heartbeatWheelSize) {
+        this.heartbeatWheelSize = heartbeatWheelSize;
+    }
+
+    public int getAckWindowSize() {
+        return ackWindowSize;
+    }
+
+    public void setAckWindowSize(int ackWindowSize) {
+        this.ackWindowSize = ackWindowSize;
+    }
+
+    public long getAckRedeliverAfterMs() {
+        return ackRedeliverAfterMs;
+    }
+
+    public void setAckRedeliverAfterMs(long ackRedeliverAfterMs) {
+        this.ackRedeliverAfterMs = ackRedeliverAfterMs;
+    }
+
+    public long getAckCheckIntervalMs() {
+        return ackCheckIntervalMs;
+    }
+
+    public void setAckCheckIntervalMs(long ackCheckIntervalMs) {
+        this.ackCheckIntervalMs = ackCheckIntervalMs;
+    }
+
+    public int getResumeChunkSize() {
+        return resumeChunkSize;
+    }
+
+    public void setResumeChunkSize(int resumeChunkSize) {
+        this.resumeChunkSize = resumeChunkSize;
+    }
+
+    public int getResumeMaxMessages() {
+        return resumeMaxMessages;
+    }
+
+    public void setResumeMaxMessages(int resumeMaxMessages) {
+        this.resumeMaxMessages = resumeMaxMessages;
+    }
+
+    public int getIdempotencyCacheSize() {
+        return idempotencyCacheSize;
+    }
+
+    public void setIdempotencyCacheSize(int idempotencyCacheSize) {
+        this.idempotencyCacheSize = idempotencyCacheSize;
+    }
+
+    public int getMessageWriterMaxBatchRows() {
+        return messageWriterMaxBatchRows;
+    }
+
+    public void setMessageWriterMaxBatchRows(int messageWriterMaxBatchRows) {
+        this.messageWriterMaxBatchRows = messageWriterMaxBatchRows;
+    }
+
+    public int getMessageWriterMaxInFlight() {
+        return messageWriterMaxInFlight;
+    }
+
+    public void setMessageWriterMaxInFlight(int messageWriterMaxInFlight) {
+        this.messageWriterMaxInFlight = messageWriterMaxInFlight;
+    }
+
+    public long getMembershipCacheTtlMs() {
+        return membershipCacheTtlMs;
+    }
+
+    public void setMembershipCacheTtlMs(long membershipCacheTtlMs) {
+        this.membershipCacheTtlMs = membershipCacheTtlMs;
+    }
+
+    public int getMembershipCacheSize() {
+        return membershipCacheSize;
+    }
+
+    public void setMembershipCacheSize(int membershipCacheSize) {
+        this.membershipCacheSize = membershipCacheSize;
+    }
+
+    public int getRoomActivityMaxPreviewLength() {
+        return roomActivityMaxPreviewLength;
+    }
+
+    public void setRoomActivityMaxPreviewLength(int roomActivityMaxPreviewLength) {
+        this.roomActivityMaxPreviewLength = roomActivityMaxPreviewLength;
+    }
+
+    public long getRoomActivityShutdownTimeoutMs() {
+        return roomActivityShutdownTimeoutMs;
+    }
+
+    public void setRoomActivityShutdownTimeoutMs(long roomActivityShutdownTimeoutMs) {
+        this.roomActivityShutdownTimeoutMs = roomActivityShutdownTimeoutMs;
+    }
+
+    public long getReadStateShutdownTimeoutMs() {
+        return readStateShutdownTimeoutMs;
+    }
+
+    public void setReadStateShutdownTimeoutMs(long readStateShutdownTimeoutMs) {
+        this.readStateShutdownTimeoutMs = readStateShutdownTimeoutMs;
+    }
+
+    public long getSubscriptionsBatchDelayMs() {
+        return subscriptionsBatchDelayMs;
+    }
+
+    public void setSubscriptionsBatchDelayMs(long subscriptionsBatchDelayMs) {
+        this.subscriptionsBatchDelayMs = subscriptionsBatchDelayMs;
+    }
+
+    public long getSubscriptionsReconnectDelayMs() {
+        return subscriptionsReconnectDelayMs;
+    }
+
+    public void setSubscriptionsReconnectDelayMs(long subscriptionsReconnectDelayMs) {
+        this.subscriptionsReconnectDelayMs = subscriptionsReconnectDelayMs;
+    }
+
+    public String getTransport() {
+        return transport;
+    }
+
+    public void setTransport(String transport) {
+        this.transport = transport;
+    }
+
+    public boolean isStreamsTransport() {
+        return "streams".equalsIgnoreCase(transport);
+    }
+
+    public int getStreamsPartitions() {
+        return streamsPartitions;
+    }
+
+    public void setStreamsPartitions(int streamsPartitions) {
+        this.streamsPartitions = streamsPartitions;
+    }
+
+    public long getStreamsMaxLength() {
+        return streamsMaxLength;
+    }
+
+    public void setStreamsMaxLength(long streamsMaxLength) {
+        this.streamsMaxLength = streamsMaxLength;
+    }
+
+    public int getStreamsBatchSize() {
+        return streamsBatchSize;
+    }
+
+    public void setStreamsBatchSize(int streamsBatchSize) {
+        this.streamsBatchSize = streamsBatchSize;
+    }
+
+    public long getStreamsBlockMs() {
+        return streamsBlockMs;
+    }
+
+    public void setStreamsBlockMs(long streamsBlockMs) {
+        this.streamsBlockMs = streamsBlockMs;
+    }
+
+    public Optional<String> getStreamsNodeId() {
+        return streamsNodeId;
+    }
+
+    public void setStreamsNodeId(Optional<String> streamsNodeId) {
+        this.streamsNodeId = streamsNodeId;
+    }
+}
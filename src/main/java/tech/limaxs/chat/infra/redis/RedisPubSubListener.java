@@ -1,12 +1,15 @@
 package tech.limaxs.chat.infra.redis;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.quarkus.redis.datasource.ReactiveRedisDataSource;
 import io.quarkus.runtime.StartupEvent;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.enterprise.event.Observes;
 import tech.limaxs.chat.api.websocket.handler.ChatWebSocketHandler;
+import tech.limaxs.chat.core.event.RoomMembershipChanged;
+import tech.limaxs.chat.infra.config.WebSocketConfig;
+import tech.limaxs.chat.infra.websocket.MembershipCache;
+import tech.limaxs.chat.infra.websocket.OutboundFrame;
 
 import java.util.UUID;
 import java.util.logging.Logger;
@@ -15,176 +18,164 @@ import java.util.logging.Logger;
  * Redis Pub/Sub listener for cross-node message distribution.
  * Subscribes to Redis channels and forwards messages to WebSocket clients.
  *
- * Channels:
+ * Channels (room and user channels only while this node has a connection in the room or of the user):
  * - chat:room:{room_id} - Messages, edits, deletes for room members
  * - signal:user:{user_id} - WebRTC signaling (SDP/ICE) for P2P calls
  * - typing:room:{room_id} - Typing indicators for room members
  * - presence:room:{room_id} - User online/offline events for room members
+ * - membership:events - Room join/leave events, applied to local WebSocket sessions
  */
 @ApplicationScoped
 public class RedisPubSubListener {
 
     private static final Logger LOG = Logger.getLogger(RedisPubSubListener.class.getName());
 
+    private static final String ROOM_CHANNEL = "chat:room:";
+    private static final String TYPING_CHANNEL = "typing:room:";
+    private static final String PRESENCE_CHANNEL = "presence:room:";
+    private static final String SIGNAL_CHANNEL = "signal:user:";
+
     private final ReactiveRedisDataSource redisDataSource;
     private final ObjectMapper objectMapper;
+    private final MembershipCache membershipCache;
+    private final RedisSubscriptions subscriptions;
+    private final WebSocketConfig config;
 
-    public RedisPubSubListener(ReactiveRedisDataSource redisDataSource) {
+    public RedisPubSubListener(ReactiveRedisDataSource redisDataSource, MembershipCache membershipCache,
+                               RedisSubscriptions subscriptions, WebSocketConfig config) {
         this.redisDataSource = redisDataSource;
         this.objectMapper = new ObjectMapper();
+        this.membershipCache = membershipCache;
+        this.subscriptions = subscriptions;
+        this.config = config;
     }
 
     /**
      * Start Redis subscriptions on application startup.
-     * Uses pattern matching to subscribe to relevant channels.
+     * Room and user channels are subscribed only while this node has a connection in the
+     * room or of the user; membership:events is subscribed for the node's lifetime.
      */
     void onStart(@Observes StartupEvent event) {
         LOG.info("Starting Redis Pub/Sub subscriptions...");
 
-        // Subscribe to all chat room channels
-        redisDataSource.pubsub(String.class)
-                .subscribe("chat:room:*")
-                .subscribe()
-                .with(
-                        message -> {
-                            LOG.fine("Received room message on channel: " + message);
-                            handleRoomMessage(message);
-                        },
-                        failure -> {
-                            LOG.severe("Failed to subscribe to room channels: " + failure.getMessage());
-                            failure.printStackTrace();
-                        },
-                        () -> LOG.info("Successfully subscribed to room channels")
-                );
-
-        // Subscribe to all user signaling channels
-        redisDataSource.pubsub(String.class)
-                .subscribe("signal:user:*")
-                .subscribe()
-                .with(
-                        message -> {
-                            LOG.fine("Received signal message on channel: " + message);
-                            handleUserSignal(message);
-                        },
-                        failure -> {
-                            LOG.severe("Failed to subscribe to signal channels: " + failure.getMessage());
-                            failure.printStackTrace();
-                        },
-                        () -> LOG.info("Successfully subscribed to signal channels")
-                );
+        subscriptions.start(this::isInterested, this::handleMessage);
+        ChatWebSocketHandler.setInterestListener(new ChatWebSocketHandler.InterestListener() {
+            @Override
+            public void roomInterestChanged(UUID roomId) {
+                if (!config.isStreamsTransport()) {
+                    // With the streams transport, room events arrive through RoomStreamConsumer
+                    subscriptions.interestChanged(ROOM_CHANNEL + roomId);
+                }
+                subscriptions.interestChanged(TYPING_CHANNEL + roomId);
+                subscriptions.interestChanged(PRESENCE_CHANNEL + roomId);
+            }
 
-        // Subscribe to all typing channels
-        redisDataSource.pubsub(String.class)
-                .subscribe("typing:room:*")
-                .subscribe()
-                .with(
-                        message -> {
-                            LOG.fine("Received typing message on channel: " + message);
-                            handleTypingMessage(message);
-                        },
-                        failure -> {
-                            LOG.severe("Failed to subscribe to typing channels: " + failure.getMessage());
-                            failure.printStackTrace();
-                        },
-                        () -> LOG.info("Successfully subscribed to typing channels")
-                );
+            @Override
+            public void userInterestChanged(UUID userId) {
+                subscriptions.interestChanged(SIGNAL_CHANNEL + userId);
+            }
+        });
 
-        // Subscribe to all presence channels
+        // Subscribe to membership changes (node-wide channel)
         redisDataSource.pubsub(String.class)
-                .subscribe("presence:room:*")
+                .subscribe("membership:events")
                 .subscribe()
                 .with(
-                        message -> {
-                            LOG.fine("Received presence message on channel: " + message);
-                            handlePresenceMessage(message);
-                        },
+                        this::handleMembershipMessage,
                         failure -> {
-                            LOG.severe("Failed to subscribe to presence channels: " + failure.getMessage());
+                            LOG.severe("Failed to subscribe to membership channel: " + failure.getMessage());
                             failure.printStackTrace();
                         },
-                        () -> LOG.info("Successfully subscribed to presence channels")
+                        () -> LOG.info("Successfully subscribed to membership channel")
                 );
 
         LOG.info("Redis Pub/Sub listener started");
     }
 
+    private boolean isInterested(String channel) {
+        UUID id = channelId(channel);
+        return channel.startsWith(SIGNAL_CHANNEL)
+                ? ChatWebSocketHandler.hasUserConnections(id)
+                : ChatWebSocketHandler.hasRoomConnections(id);
+    }
+
     /**
-     * Handle messages from room channels (chat:room:{room_id}).
-     * These include NEW_MESSAGE, MESSAGE_EDITED, MESSAGE_DELETED events.
-     * Forward to all WebSocket connections in the room.
+     * Route a message by its channel name; the payload is forwarded as is, never parsed.
      */
-    private void handleRoomMessage(String message) {
+    private void handleMessage(String channel, String message) {
         try {
-            // Parse the message to extract room ID
-            JsonNode json = objectMapper.readTree(message);
-            if (json.has("data") && json.get("data").has("roomId")) {
-                String roomId = json.get("data").get("roomId").asText();
-                LOG.info("Forwarding room message to room: " + roomId);
-                ChatWebSocketHandler.broadcastToRoom(UUID.fromString(roomId), message);
+            UUID id = channelId(channel);
+            if (channel.startsWith(ROOM_CHANNEL)) {
+                handleRoomMessage(id, message);
+            } else if (channel.startsWith(TYPING_CHANNEL)) {
+                handleTypingMessage(id, message);
+            } else if (channel.startsWith(PRESENCE_CHANNEL)) {
+                handlePresenceMessage(id, message);
+            } else if (channel.startsWith(SIGNAL_CHANNEL)) {
+                handleUserSignal(id, message);
             }
-        } catch (Exception e) {
-            LOG.severe("Error handling room message: " + e.getMessage());
-            e.printStackTrace();
+        } catch (IllegalArgumentException e) {
+            LOG.warning("Ignoring message on malformed channel " + channel);
         }
     }
 
+    /**
+     * The room or user ID every room and user channel ends with.
+     */
+    private static UUID channelId(String channel) {
+        return UUID.fromString(channel.substring(channel.lastIndexOf(':') + 1));
+    }
+
+    /**
+     * Handle messages from room channels (chat:room:{room_id}).
+     * These include NEW_MESSAGE, MESSAGE_EDITED, MESSAGE_DELETED events.
+     * Forward to all WebSocket connections in the room.
+     */
+    private void handleRoomMessage(UUID roomId, String message) {
+        LOG.fine("Forwarding room message to room: " + roomId);
+        ChatWebSocketHandler.broadcastToRoom(roomId, message);
+    }
+
     /**
      * Handle WebRTC signaling messages (signal:user:{user_id}).
      * These include SIGNAL_SDP and SIGNAL_ICE events.
      * Forward to the specific target user's WebSocket connections.
      */
-    private void handleUserSignal(String message) {
-        try {
-            // Parse the message to get the event type and target user
-            JsonNode json = objectMapper.readTree(message);
-            String eventType = json.has("event") ? json.get("event").asText() : "";
-
-            // For SIGNAL_SDP and SIGNAL_ICE, the target is in data.targetId
-            if (json.has("data") && json.get("data").has("targetId")) {
-                String userId = json.get("data").get("targetId").asText();
-                LOG.info("Forwarding " + eventType + " to user: " + userId);
-                ChatWebSocketHandler.sendToUser(UUID.fromString(userId), message);
-            }
-        } catch (Exception e) {
-            LOG.severe("Error handling user signal: " + e.getMessage());
-            e.printStackTrace();
-        }
+    private void handleUserSignal(UUID userId, String message) {
+        LOG.fine("Forwarding signal to user: " + userId);
+        ChatWebSocketHandler.sendToUser(userId, message);
     }
 
     /**
      * Handle typing indicator messages (typing:room:{room_id}).
      * Forward TYPING events to all WebSocket connections in the room.
      */
-    private void handleTypingMessage(String message) {
-        try {
-            // Parse the message to extract room ID
-            JsonNode json = objectMapper.readTree(message);
-            if (json.has("data") && json.get("data").has("roomId")) {
-                String roomId = json.get("data").get("roomId").asText();
-                LOG.fine("Forwarding typing indicator to room: " + roomId);
-                ChatWebSocketHandler.broadcastToRoom(UUID.fromString(roomId), message);
-            }
-        } catch (Exception e) {
-            LOG.severe("Error handling typing message: " + e.getMessage());
-            e.printStackTrace();
-        }
+    private void handleTypingMessage(UUID roomId, String message) {
+        LOG.fine("Forwarding typing indicator to room: " + roomId);
+        ChatWebSocketHandler.broadcastToRoom(roomId, OutboundFrame.lowPriority(message));
     }
 
     /**
      * Handle presence messages (presence:room:{room_id}).
      * Forward PRESENCE events to all WebSocket connections in the room.
      */
-    private void handlePresenceMessage(String message) {
+    private void handlePresenceMessage(UUID roomId, String message) {
+        LOG.fine("Forwarding PRESENCE event to room: " + roomId);
+        ChatWebSocketHandler.broadcastToRoom(roomId, OutboundFrame.lowPriority(message));
+    }
+
+    /**
+     * Handle room membership changes (membership:events).
+     * Keeps the room sets of this node's WebSocket sessions current.
+     */
+    private void handleMembershipMessage(String message) {
         try {
-            // Parse the message to extract room ID
-            JsonNode json = objectMapper.readTree(message);
-            if (json.has("data") && json.get("data").has("roomId")) {
-                String roomId = json.get("data").get("roomId").asText();
-                LOG.info("Forwarding PRESENCE event to room: " + roomId);
-                ChatWebSocketHandler.broadcastToRoom(UUID.fromString(roomId), message);
-            }
+            RoomMembershipChanged change = objectMapper.readValue(message, RoomMembershipChanged.class);
+            LOG.fine("Applying membership change: " + change);
+            membershipCache.invalidate(change.roomId(), change.userId());
+            ChatWebSocketHandler.applyMembershipChange(change.roomId(), change.userId(), change.joined());
         } catch (Exception e) {
-            LOG.severe("Error handling presence message: " + e.getMessage());
+            LOG.severe("Error handling membership message: " + e.getMessage());
             e.printStackTrace();
         }
     }
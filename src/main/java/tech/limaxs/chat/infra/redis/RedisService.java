@@ -1,29 +1,82 @@
 package tech.limaxs.chat.infra.redis;
 
 import io.quarkus.redis.datasource.ReactiveRedisDataSource;
+import io.quarkus.redis.datasource.hash.ReactiveHashCommands;
+import io.quarkus.redis.datasource.keys.KeyScanArgs;
 import io.quarkus.redis.datasource.pubsub.ReactivePubSubCommands;
+import io.quarkus.redis.datasource.stream.ReactiveStreamCommands;
+import io.quarkus.redis.datasource.stream.XAddArgs;
 import io.quarkus.redis.datasource.value.ReactiveValueCommands;
+import io.quarkus.runtime.StartupEvent;
 import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.redis.client.Response;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import tech.limaxs.chat.infra.config.WebSocketConfig;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
 
 @ApplicationScoped
 public class RedisService {
 
     private final ReactiveRedisDataSource redisDataSource;
+    private final WebSocketConfig config;
     private ReactiveValueCommands<String, String> valueCommands;
     private ReactivePubSubCommands<String> pubSubCommands;
+    private ReactiveHashCommands<String, String, String> hashCommands;
+    private ReactiveStreamCommands<String, String, String> streamCommands;
     private static final Logger LOG = Logger.getLogger(RedisService.class.getName());
 
-    public RedisService(ReactiveRedisDataSource redisDataSource) {
+    // KEYS: unread hashes of the recipients, ARGV[1]: room ID
+    // The keys span hash slots, so this needs standalone Redis, not Redis Cluster
+    private static final String INCREMENT_UNREAD_SCRIPT = """
+        for i = 1, #KEYS do
+          redis.call('HINCRBY', KEYS[i], ARGV[1], 1)
+        end
+        return #KEYS
+        """;
+    private static final String INCREMENT_UNREAD_SHA = sha1(INCREMENT_UNREAD_SCRIPT);
+
+    // KEYS[1]: legacy unread:{room_id}:{user_id} counter, KEYS[2]: user's unread hash, ARGV[1]: room ID
+    private static final String MIGRATE_UNREAD_SCRIPT = """
+        local count = tonumber(redis.call('GET', KEYS[1]))
+        if count and count > 0 then
+          redis.call('HINCRBY', KEYS[2], ARGV[1], count)
+        end
+        return redis.call('DEL', KEYS[1])
+        """;
+    private static final String MIGRATE_UNREAD_SHA = sha1(MIGRATE_UNREAD_SCRIPT);
+
+    public RedisService(ReactiveRedisDataSource redisDataSource, WebSocketConfig config) {
         this.redisDataSource = redisDataSource;
+        this.config = config;
         // Initialize commands lazily
         this.valueCommands = null;
         this.pubSubCommands = null;
     }
 
+    void onStart(@Observes StartupEvent event) {
+        migrateLegacyUnread().subscribe().with(
+            migrated -> {
+                if (migrated > 0) {
+                    LOG.info("Moved " + migrated + " legacy unread counters into unread hashes");
+                }
+            },
+            failure -> LOG.warning("Failed to migrate legacy unread counters: " + failure.getMessage())
+        );
+    }
+
     private ReactiveValueCommands<String, String> getValueCommands() {
         if (valueCommands == null) {
             this.valueCommands = redisDataSource.value(String.class);
@@ -31,6 +84,20 @@ public class RedisService {
         return valueCommands;
     }
 
+    private ReactiveHashCommands<String, String, String> getHashCommands() {
+        if (hashCommands == null) {
+            this.hashCommands = redisDataSource.hash(String.class);
+        }
+        return hashCommands;
+    }
+
+    private ReactiveStreamCommands<String, String, String> getStreamCommands() {
+        if (streamCommands == null) {
+            this.streamCommands = redisDataSource.stream(String.class);
+        }
+        return streamCommands;
+    }
+
     private ReactivePubSubCommands<String> getPubSubCommands() {
         if (pubSubCommands == null) {
             this.pubSubCommands = redisDataSource.pubsub(String.class);
@@ -47,28 +114,143 @@ public class RedisService {
         return getValueCommands().get("user:presence:" + userId);
     }
 
-    // Unread count: unread:{room_id}:{user_id} -> Integer
+    // Unread counts: unread:user:{user_id} -> hash of {room_id} -> Integer (absent means 0)
     public Uni<Long> incrementUnread(UUID roomId, UUID userId) {
-        return getValueCommands().incr("unread:" + roomId + ":" + userId);
+        return getHashCommands().hincrby(unreadKey(userId), roomId.toString(), 1);
+    }
+
+    /**
+     * Increment the room's unread count of every recipient with one script call,
+     * instead of one round trip per member.
+     */
+    public Uni<Void> incrementUnread(UUID roomId, Collection<UUID> recipients) {
+        if (recipients.isEmpty()) {
+            return Uni.createFrom().voidItem();
+        }
+        List<String> keys = new ArrayList<>(recipients.size());
+        for (UUID userId : recipients) {
+            keys.add(unreadKey(userId));
+        }
+        return evalScript(INCREMENT_UNREAD_SCRIPT, INCREMENT_UNREAD_SHA, keys, roomId.toString()).replaceWithVoid();
     }
 
     public Uni<Void> resetUnread(UUID roomId, UUID userId) {
-        return getValueCommands().set("unread:" + roomId + ":" + userId, "0").replaceWithVoid();
+        return getHashCommands().hdel(unreadKey(userId), roomId.toString()).replaceWithVoid();
     }
 
     public Uni<Long> getUnreadCount(UUID roomId, UUID userId) {
-        return getValueCommands().get("unread:" + roomId + ":" + userId)
+        return getHashCommands().hget(unreadKey(userId), roomId.toString())
                 .onItem().ifNull().continueWith("0")
                 .map(Long::parseLong);
     }
 
+    /**
+     * Unread counts of all the user's rooms with unread messages, in one HGETALL.
+     */
+    public Uni<Map<UUID, Long>> getUnreadCounts(UUID userId) {
+        return getHashCommands().hgetall(unreadKey(userId))
+                .map(counts -> {
+                    Map<UUID, Long> result = new HashMap<>(counts.size());
+                    counts.forEach((roomId, count) -> result.put(UUID.fromString(roomId), Long.parseLong(count)));
+                    return result;
+                });
+    }
+
+    /**
+     * Move the counters of the former unread:{room_id}:{user_id} layout into the user
+     * hashes, adding to counts already there. Each counter is moved and deleted by one
+     * script call, so nodes starting at the same time cannot count it twice.
+     */
+    Uni<Integer> migrateLegacyUnread() {
+        return redisDataSource.key(String.class)
+                .scan(new KeyScanArgs().match("unread:*-*:*").count(1000))
+                .toMulti()
+                .onItem().transformToUniAndConcatenate(key -> {
+                    String[] parts = key.split(":");
+                    if (parts.length != 3) {
+                        return Uni.createFrom().item(0);
+                    }
+                    try {
+                        UUID roomId = UUID.fromString(parts[1]);
+                        UUID userId = UUID.fromString(parts[2]);
+                        return evalScript(MIGRATE_UNREAD_SCRIPT, MIGRATE_UNREAD_SHA,
+                                List.of(key, unreadKey(userId)), roomId.toString())
+                                .map(Response::toInteger);
+                    } catch (IllegalArgumentException e) {
+                        return Uni.createFrom().item(0);
+                    }
+                })
+                .collect().with(Collectors.summingInt(Integer::intValue));
+    }
+
+    private static String unreadKey(UUID userId) {
+        return "unread:user:" + userId;
+    }
+
+    /**
+     * Run a script by its SHA, loading it with EVAL if the server does not know it yet.
+     */
+    private Uni<Response> evalScript(String script, String sha, List<String> keys, String... args) {
+        List<String> evalArgs = new ArrayList<>(keys.size() + args.length + 2);
+        evalArgs.add(sha);
+        evalArgs.add(String.valueOf(keys.size()));
+        evalArgs.addAll(keys);
+        evalArgs.addAll(List.of(args));
+        return redisDataSource.execute("EVALSHA", evalArgs.toArray(String[]::new))
+                .onFailure(failure -> failure.getMessage() != null && failure.getMessage().startsWith("NOSCRIPT"))
+                .recoverWithUni(() -> {
+                    evalArgs.set(0, script);
+                    return redisDataSource.execute("EVAL", evalArgs.toArray(String[]::new));
+                });
+    }
+
+    private static String sha1(String script) {
+        try {
+            return HexFormat.of().formatHex(
+                    MessageDigest.getInstance("SHA-1").digest(script.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Rate limit: ratelimit:{scope}:{epoch_second} -> Integer, TTL 2s (fixed one-second window)
+    public Uni<Long> incrementRateWindow(String scope, long epochSecond) {
+        String key = "ratelimit:" + scope + ":" + epochSecond;
+        return getValueCommands().incr(key)
+                .call(count -> count == 1
+                        ? redisDataSource.key().expire(key, 2)
+                        : Uni.createFrom().voidItem());
+    }
+
     // Pub/Sub: chat:room:{room_id} - messages, edits, deletes
+    // Streams transport: chat:stream:{partition} - same events, fields room and payload
     public Uni<Void> publishToRoom(UUID roomId, String message) {
+        if (config.isStreamsTransport()) {
+            XAddArgs args = new XAddArgs().maxlen(config.getStreamsMaxLength()).nearlyExactTrimming();
+            return getStreamCommands()
+                    .xadd(roomStreamKey(roomId), args, Map.of("room", roomId.toString(), "payload", message))
+                    .replaceWithVoid();
+        }
         String channel = "chat:room:" + roomId.toString();
         LOG.info("Publishing to room channel: " + channel);
         return getPubSubCommands().publish(channel, message).replaceWithVoid();
     }
 
+    /**
+     * Stream partition of a room; all events of one room go to the same stream, in order.
+     */
+    public String roomStreamKey(UUID roomId) {
+        return "chat:stream:" + Math.floorMod(roomId.hashCode(), config.getStreamsPartitions());
+    }
+
+    public List<String> roomStreamKeys() {
+        List<String> keys = new ArrayList<>(config.getStreamsPartitions());
+        for (int i = 0; i < config.getStreamsPartitions(); i++) {
+            keys.add("chat:stream:" + i);
+        }
+        return keys;
+    }
+
     // Pub/Sub: signal:user:{user_id} - WebRTC signaling (P2P)
     public Uni<Void> publishToUser(UUID userId, String message) {
         String channel = "signal:user:" + userId.toString();
@@ -90,6 +272,11 @@ public class RedisService {
         return getPubSubCommands().publish(channel, message).replaceWithVoid();
     }
 
+    // Pub/Sub: membership:events - room join/leave events for every node
+    public Uni<Void> publishMembership(String message) {
+        return getPubSubCommands().publish("membership:events", message).replaceWithVoid();
+    }
+
     // Call State: user:call:{user_id} -> "busy", TTL 300s (5 minutes)
     public Uni<Void> setCallBusy(UUID userId) {
         return getValueCommands().setex("user:call:" + userId, 300, "busy").replaceWithVoid();
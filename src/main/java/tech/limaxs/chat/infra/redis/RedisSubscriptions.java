@@ -0,0 +1,235 @@
+package tech.limaxs.chat.infra.redis;
+
+import io.quarkus.redis.datasource.ReactiveRedisDataSource;
+import io.quarkus.runtime.ShutdownEvent;
+import io.smallrye.mutiny.Uni;
+import io.vertx.core.Vertx;
+import io.vertx.mutiny.redis.client.Command;
+import io.vertx.mutiny.redis.client.RedisConnection;
+import io.vertx.mutiny.redis.client.Request;
+import io.vertx.mutiny.redis.client.Response;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import tech.limaxs.chat.infra.config.WebSocketConfig;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+import java.util.logging.Logger;
+
+/**
+ * Channel subscriptions that follow local interest, on one dedicated Redis connection.
+ *
+ * Callers {@link #interestChanged(String) report} channels whose interest may have
+ * changed; the current interest is asked from the predicate given to {@link #start}, so
+ * reports can be duplicated or arrive out of order. Reports are collected for
+ * {@code chat.ws.subscriptions.batch-delay-ms} and applied as one SUBSCRIBE and one
+ * UNSUBSCRIBE for the whole batch. A channel counts as subscribed once Redis has
+ * confirmed its SUBSCRIBE; channels of a failed SUBSCRIBE are pending again and retried
+ * after {@code chat.ws.subscriptions.reconnect-delay-ms}. After a lost connection, every
+ * subscribed channel is subscribed again on a new one.
+ */
+@ApplicationScoped
+public class RedisSubscriptions {
+
+    private static final Logger LOG = Logger.getLogger(RedisSubscriptions.class.getName());
+
+    private final ReactiveRedisDataSource redisDataSource;
+    private final Vertx vertx;
+    private final WebSocketConfig config;
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    private final Set<String> subscribed = new HashSet<>();
+    private final Set<String> subscribing = new HashSet<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private volatile RedisConnection connection;
+    private volatile boolean stopped;
+    private Predicate<String> interested;
+    private BiConsumer<String, String> onMessage;
+
+    public RedisSubscriptions(ReactiveRedisDataSource redisDataSource, Vertx vertx, WebSocketConfig config) {
+        this.redisDataSource = redisDataSource;
+        this.vertx = vertx;
+        this.config = config;
+    }
+
+    /**
+     * Open the subscription connection. {@code onMessage} receives (channel, payload) of
+     * every message on a subscribed channel.
+     */
+    public void start(Predicate<String> interested, BiConsumer<String, String> onMessage) {
+        this.interested = interested;
+        this.onMessage = onMessage;
+        connect();
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        stopped = true;
+        RedisConnection current = connection;
+        if (current != null) {
+            current.closeAndForget();
+        }
+    }
+
+    /**
+     * Note that local interest in the channel may have changed.
+     */
+    public void interestChanged(String channel) {
+        pending.add(channel);
+        scheduleFlush(config.getSubscriptionsBatchDelayMs());
+    }
+
+    public synchronized int subscribedCount() {
+        return subscribed.size();
+    }
+
+    private void connect() {
+        redisDataSource.getRedis().connect().subscribe().with(
+            conn -> {
+                conn.handler(this::onResponse);
+                conn.exceptionHandler(failure ->
+                    LOG.warning("Subscription connection error: " + failure.getMessage()));
+                conn.endHandler(() -> reconnect(conn));
+                int restoring;
+                synchronized (this) {
+                    connection = conn;
+                    // Nothing is subscribed on a new connection; subscribe everything again
+                    pending.addAll(subscribed);
+                    pending.addAll(subscribing);
+                    restoring = subscribed.size() + subscribing.size();
+                    subscribed.clear();
+                    subscribing.clear();
+                }
+                LOG.info("Subscription connection open, restoring " + restoring + " channels");
+                flush();
+            },
+            failure -> {
+                LOG.severe("Failed to open subscription connection: " + failure.getMessage());
+                reconnect(null);
+            }
+        );
+    }
+
+    private void reconnect(RedisConnection lost) {
+        synchronized (this) {
+            if (lost != null && connection != lost) {
+                return;
+            }
+            connection = null;
+        }
+        if (!stopped) {
+            vertx.setTimer(config.getSubscriptionsReconnectDelayMs(), id -> connect());
+        }
+    }
+
+    /**
+     * Apply the pending interest changes with one SUBSCRIBE and one UNSUBSCRIBE.
+     * Without a connection the changes stay pending until it is back. A channel whose
+     * SUBSCRIBE is still unconfirmed is checked again when the confirmation arrives.
+     */
+    private void flush() {
+        flushScheduled.set(false);
+        List<String> toSubscribe = new ArrayList<>();
+        List<String> toUnsubscribe = new ArrayList<>();
+        RedisConnection conn;
+        synchronized (this) {
+            conn = connection;
+            if (conn == null) {
+                return;
+            }
+            for (String channel : pending) {
+                pending.remove(channel);
+                if (interested.test(channel)) {
+                    if (!subscribed.contains(channel) && subscribing.add(channel)) {
+                        toSubscribe.add(channel);
+                    }
+                } else if (subscribed.remove(channel)) {
+                    toUnsubscribe.add(channel);
+                }
+            }
+        }
+        subscribe(conn, toSubscribe);
+        send(conn, Command.UNSUBSCRIBE, toUnsubscribe);
+        if (!toSubscribe.isEmpty() || !toUnsubscribe.isEmpty()) {
+            LOG.fine("Subscribed " + toSubscribe.size() + ", unsubscribed " + toUnsubscribe.size() + " channels");
+        }
+    }
+
+    /**
+     * Mark the channels subscribed once Redis confirms, or pending again if it fails.
+     * Channels that lost their interest meanwhile are pending again, to be unsubscribed.
+     */
+    private void subscribe(RedisConnection conn, List<String> channels) {
+        if (channels.isEmpty()) {
+            return;
+        }
+        request(conn, Command.SUBSCRIBE, channels).subscribe().with(
+            unused -> {
+                boolean recheck = false;
+                synchronized (this) {
+                    for (String channel : channels) {
+                        if (!subscribing.remove(channel) || connection != conn) {
+                            continue;
+                        }
+                        subscribed.add(channel);
+                        if (!interested.test(channel)) {
+                            pending.add(channel);
+                            recheck = true;
+                        }
+                    }
+                }
+                if (recheck) {
+                    scheduleFlush(config.getSubscriptionsBatchDelayMs());
+                }
+            },
+            failure -> {
+                LOG.warning("SUBSCRIBE of " + channels.size() + " channels failed, retrying: " + failure.getMessage());
+                synchronized (this) {
+                    for (String channel : channels) {
+                        if (subscribing.remove(channel)) {
+                            pending.add(channel);
+                        }
+                    }
+                }
+                scheduleFlush(config.getSubscriptionsReconnectDelayMs());
+            }
+        );
+    }
+
+    private void scheduleFlush(long delayMs) {
+        if (flushScheduled.compareAndSet(false, true)) {
+            vertx.setTimer(Math.max(1, delayMs), id -> flush());
+        }
+    }
+
+    private static void send(RedisConnection conn, Command command, List<String> channels) {
+        if (channels.isEmpty()) {
+            return;
+        }
+        request(conn, command, channels).subscribe().with(
+            unused -> {},
+            failure -> LOG.warning(command + " of " + channels.size() + " channels failed: " + failure.getMessage())
+        );
+    }
+
+    private static Uni<Response> request(RedisConnection conn, Command command, List<String> channels) {
+        Request request = Request.cmd(command);
+        for (String channel : channels) {
+            request.arg(channel);
+        }
+        return conn.send(request);
+    }
+
+    /**
+     * Pub/sub pushes arrive as [message, channel, payload]; subscribe confirmations are ignored.
+     */
+    private void onResponse(Response response) {
+        if (response.size() == 3 && "message".equals(response.get(0).toString())) {
+            onMessage.accept(response.get(1).toString(), response.get(2).toString());
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package tech.limaxs.chat.infra.redis;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.TransactionPhase;
+import tech.limaxs.chat.core.event.RoomMembershipChanged;
+
+import java.util.logging.Logger;
+
+/**
+ * Publishes committed membership changes to Redis so every node can update
+ * the room sets of its open WebSocket sessions.
+ */
+@ApplicationScoped
+public class RoomMembershipPublisher {
+
+    private static final Logger LOG = Logger.getLogger(RoomMembershipPublisher.class.getName());
+
+    private final RedisService redisService;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public RoomMembershipPublisher(RedisService redisService) {
+        this.redisService = redisService;
+    }
+
+    void onMembershipChanged(@Observes(during = TransactionPhase.AFTER_SUCCESS) RoomMembershipChanged event) {
+        try {
+            redisService.publishMembership(objectMapper.writeValueAsString(event)).subscribe().with(
+                unused -> LOG.fine("Published membership change: " + event),
+                failure -> LOG.warning("Failed to publish membership change: " + failure.getMessage())
+            );
+        } catch (Exception e) {
+            LOG.severe("Error publishing membership change: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package tech.limaxs.chat.infra.redis;
+
+import io.quarkus.redis.datasource.ReactiveRedisDataSource;
+import io.quarkus.redis.datasource.stream.ReactiveStreamCommands;
+import io.quarkus.redis.datasource.stream.StreamMessage;
+import io.quarkus.redis.datasource.stream.XGroupCreateArgs;
+import io.quarkus.redis.datasource.stream.XReadGroupArgs;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import io.smallrye.mutiny.Uni;
+import io.vertx.core.Vertx;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import tech.limaxs.chat.api.websocket.handler.ChatWebSocketHandler;
+import tech.limaxs.chat.infra.config.WebSocketConfig;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+/**
+ * Room fan-out over Redis Streams, used instead of chat:room:{id} pub/sub when
+ * {@code chat.ws.transport=streams}.
+ *
+ * Room events are appended to one of {@code chat.ws.streams.partitions} capped streams,
+ * chosen by room hash. Every node reads all partitions through its own consumer group,
+ * named after {@code chat.ws.streams.node-id}, with XREADGROUP in batches of
+ * {@code chat.ws.streams.batch-size}. It forwards the events of rooms it has
+ * connections in and acknowledges each batch once forwarded. Because Redis keeps the
+ * group's position, a node that lost Redis or restarted continues after the last event
+ * it read, first re-reading events it read but never acknowledged. Events trimmed from
+ * the capped stream in the meantime are lost, and clients fall back to RESUME.
+ */
+@ApplicationScoped
+public class RoomStreamConsumer {
+
+    private static final Logger LOG = Logger.getLogger(RoomStreamConsumer.class.getName());
+
+    private final ReactiveRedisDataSource redisDataSource;
+    private final RedisService redisService;
+    private final WebSocketConfig config;
+    private final Vertx vertx;
+    private ReactiveStreamCommands<String, String, String> streams;
+    private String nodeId;
+    private String group;
+    private volatile boolean stopped;
+
+    public RoomStreamConsumer(ReactiveRedisDataSource redisDataSource, RedisService redisService,
+                              WebSocketConfig config, Vertx vertx) {
+        this.redisDataSource = redisDataSource;
+        this.redisService = redisService;
+        this.config = config;
+        this.vertx = vertx;
+    }
+
+    void onStart(@Observes StartupEvent event) {
+        if (!config.isStreamsTransport()) {
+            return;
+        }
+        // Without a stable, unique node ID a restarted node would start a new group at the end
+        // of the streams, or nodes would share a group and split each other's events
+        nodeId = config.getStreamsNodeId()
+                .filter(id -> !id.isBlank())
+                .orElseThrow(() -> new IllegalStateException(
+                        "chat.ws.streams.node-id must be set when chat.ws.transport=streams"));
+        streams = redisDataSource.stream(String.class);
+        group = "node:" + nodeId;
+        LOG.info("Reading room streams as consumer group " + group);
+        start();
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        stopped = true;
+    }
+
+    private void start() {
+        createGroups()
+                .subscribe().with(
+                    unused -> read(true),
+                    failure -> retry("Failed to create consumer groups", failure)
+                );
+    }
+
+    /**
+     * Create this node's group on every partition, starting at the current end of the
+     * stream. An existing group keeps its position.
+     */
+    private Uni<Void> createGroups() {
+        List<Uni<Void>> creates = new ArrayList<>();
+        for (String key : redisService.roomStreamKeys()) {
+            creates.add(streams.xgroupCreate(key, group, "$", new XGroupCreateArgs().mkstream())
+                    .onFailure(failure -> failure.getMessage() != null && failure.getMessage().startsWith("BUSYGROUP"))
+                    .recoverWithNull());
+        }
+        return Uni.join().all(creates).andFailFast().replaceWithVoid();
+    }
+
+    /**
+     * Read the next batch. {@code pending} re-reads entries delivered to this node but not
+     * acknowledged, until there are none left; then new entries are read, blocking
+     * until some arrive.
+     */
+    private void read(boolean pending) {
+        if (stopped) {
+            return;
+        }
+        Map<String, String> positions = new LinkedHashMap<>();
+        for (String key : redisService.roomStreamKeys()) {
+            positions.put(key, pending ? "0" : ">");
+        }
+        XReadGroupArgs args = new XReadGroupArgs().count(config.getStreamsBatchSize());
+        if (!pending) {
+            args.block(Duration.ofMillis(config.getStreamsBlockMs()));
+        }
+        streams.xreadgroup(group, nodeId, positions, args)
+                .chain(messages -> forward(messages).replaceWith(messages))
+                .subscribe().with(
+                    messages -> read(pending && messages != null && !messages.isEmpty()),
+                    failure -> retry("Failed to read room streams", failure)
+                );
+    }
+
+    /**
+     * Forward the events of rooms with local connections, then acknowledge the whole batch.
+     */
+    private Uni<Void> forward(List<StreamMessage<String, String, String>> messages) {
+        if (messages == null || messages.isEmpty()) {
+            return Uni.createFrom().voidItem();
+        }
+        Map<String, List<String>> ids = new HashMap<>();
+        for (StreamMessage<String, String, String> message : messages) {
+            ids.computeIfAbsent(message.key(), key -> new ArrayList<>()).add(message.id());
+            Map<String, String> fields = message.payload();
+            String room = fields != null ? fields.get("room") : null;
+            String payload = fields != null ? fields.get("payload") : null;
+            if (room == null || payload == null) {
+                continue;
+            }
+            try {
+                UUID roomId = UUID.fromString(room);
+                if (ChatWebSocketHandler.hasRoomConnections(roomId)) {
+                    ChatWebSocketHandler.broadcastToRoom(roomId, payload);
+                }
+            } catch (IllegalArgumentException e) {
+                LOG.warning("Ignoring stream entry " + message.id() + " with malformed room " + room);
+            }
+        }
+        List<Uni<Integer>> acks = new ArrayList<>(ids.size());
+        ids.forEach((key, entryIds) -> acks.add(streams.xack(key, group, entryIds.toArray(String[]::new))));
+        return Uni.join().all(acks).andFailFast().replaceWithVoid();
+    }
+
+    /**
+     * Start over after a delay, beginning with the entries read but not yet acknowledged.
+     */
+    private void retry(String message, Throwable failure) {
+        if (stopped) {
+            return;
+        }
+        LOG.warning(message + ", retrying: " + failure.getMessage());
+        vertx.setTimer(config.getSubscriptionsReconnectDelayMs(), id -> start());
+    }
+}
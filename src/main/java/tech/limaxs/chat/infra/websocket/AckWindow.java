@@ -0,0 +1,83 @@
+package tech.limaxs.chat.infra.websocket;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Unacknowledged frames of one connection, kept in a ring buffer indexed by sequence number.
+ *
+ * Sequence numbers start at 1 and are contiguous, so the frames between the highest
+ * acknowledged sequence and the next one to stamp occupy consecutive slots and no map
+ * is needed. An ACK for sequence n releases every frame up to n.
+ */
+final class AckWindow {
+
+    private final OutboundFrame[] frames;
+    private final long[] sentAt;
+    private long acked;
+    private long nextSeq = 1;
+
+    AckWindow(int capacity) {
+        this.frames = new OutboundFrame[capacity];
+        this.sentAt = new long[capacity];
+    }
+
+    /**
+     * Assign the next sequence number and keep the stamped frame until it is acknowledged.
+     * Returns null when the window is full.
+     */
+    synchronized OutboundFrame stamp(OutboundFrame frame, long now) {
+        if (nextSeq - acked > frames.length) {
+            return null;
+        }
+        long seq = nextSeq++;
+        OutboundFrame stamped = frame.withSeq(seq);
+        int slot = slot(seq);
+        frames[slot] = stamped;
+        sentAt[slot] = now;
+        return stamped;
+    }
+
+    /**
+     * Release frames up to and including {@code seq}, the highest contiguous sequence the client received.
+     */
+    synchronized void acknowledge(long seq) {
+        long upTo = Math.min(seq, nextSeq - 1);
+        for (long s = acked + 1; s <= upTo; s++) {
+            frames[slot(s)] = null;
+        }
+        acked = Math.max(acked, upTo);
+    }
+
+    /**
+     * Frames sent more than {@code timeoutNanos} ago and still unacknowledged, oldest first.
+     * Their send time is reset, so each is returned at most once per timeout.
+     */
+    synchronized List<OutboundFrame> expired(long now, long timeoutNanos) {
+        List<OutboundFrame> expired = null;
+        for (long s = acked + 1; s < nextSeq; s++) {
+            int slot = slot(s);
+            if (now - sentAt[slot] < timeoutNanos) {
+                continue;
+            }
+            if (expired == null) {
+                expired = new ArrayList<>();
+            }
+            expired.add(frames[slot]);
+            sentAt[slot] = now;
+        }
+        return expired != null ? expired : List.of();
+    }
+
+    synchronized int size() {
+        return (int) (nextSeq - 1 - acked);
+    }
+
+    int capacity() {
+        return frames.length;
+    }
+
+    private int slot(long seq) {
+        return (int) (seq % frames.length);
+    }
+}
@@ -0,0 +1,97 @@
+package tech.limaxs.chat.infra.websocket;
+
+import io.smallrye.mutiny.Uni;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import tech.limaxs.chat.infra.config.WebSocketConfig;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Node-wide admission control for WebSocket handshakes.
+ *
+ * Caps the number of handshakes verifying at once and the number of open
+ * connections on this node. Handshake crypto runs on virtual threads so a
+ * reconnect storm never blocks the Vert.x event loop.
+ *
+ * Usage: {@link #tryAdmit()} reserves a connection slot, {@link #runHandshake(Supplier)}
+ * verifies off the event loop, and {@link #release()} gives the slot back when the
+ * handshake fails or the connection closes.
+ */
+@ApplicationScoped
+public class AdmissionController {
+
+    private static final Logger LOG = Logger.getLogger(AdmissionController.class.getName());
+
+    private final WebSocketConfig config;
+    private final Semaphore handshakePermits;
+    private final AtomicInteger connections = new AtomicInteger();
+    private final ExecutorService handshakeExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public AdmissionController(WebSocketConfig config) {
+        this.config = config;
+        this.handshakePermits = new Semaphore(config.getMaxConcurrentHandshakes());
+    }
+
+    /**
+     * Reserve a connection slot and a handshake permit.
+     * Returns false when the node is at its connection or handshake limit.
+     */
+    public boolean tryAdmit() {
+        if (connections.incrementAndGet() > config.getMaxConnections()) {
+            connections.decrementAndGet();
+            LOG.warning("Handshake rejected: node at max connections (" + config.getMaxConnections() + ")");
+            return false;
+        }
+        if (!handshakePermits.tryAcquire()) {
+            connections.decrementAndGet();
+            LOG.warning("Handshake rejected: " + config.getMaxConcurrentHandshakes() + " handshakes in flight");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Run handshake verification on a virtual thread. The handshake permit taken by
+     * {@link #tryAdmit()} is returned once verification completes, whatever the outcome.
+     */
+    public <T> Uni<T> runHandshake(Supplier<T> verification) {
+        return Uni.createFrom().item(verification)
+                .runSubscriptionOn(handshakeExecutor)
+                .onTermination().invoke(handshakePermits::release);
+    }
+
+    /**
+     * Give back a connection slot reserved by {@link #tryAdmit()}.
+     */
+    public void release() {
+        connections.decrementAndGet();
+    }
+
+    /**
+     * Retry hint for rejected clients, jittered so reconnects spread out.
+     */
+    public long retryAfterMillis() {
+        long jitter = config.getRetryAfterJitterMs();
+        return config.getRetryAfterMinMs() + (jitter > 0 ? ThreadLocalRandom.current().nextLong(jitter) : 0);
+    }
+
+    public int getConnectionCount() {
+        return connections.get();
+    }
+
+    public int getHandshakesInFlight() {
+        return config.getMaxConcurrentHandshakes() - handshakePermits.availablePermits();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        handshakeExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,116 @@
+package tech.limaxs.chat.infra.websocket;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Streaming transcoder between the JSON envelope and its CBOR form used by the
+ * {@code nexus.cbor} subprotocol.
+ *
+ * The envelope structure is unchanged. Values of the known ID fields ({@link #ID_FIELDS})
+ * in canonical lowercase UUID form are written as 16-byte CBOR byte strings, and 16-byte
+ * byte strings are read back as UUID strings, so the handlers keep working on the JSON
+ * envelope. Every other string, including message content, is copied as is. No tree is
+ * built in either direction.
+ */
+public final class CborCodec {
+
+    private static final JsonFactory JSON = new JsonFactory();
+    private static final CBORFactory CBOR = new CBORFactory();
+
+    private static final Set<String> ID_FIELDS = Set.of(
+            "id", "roomId", "senderId", "messageId", "userId", "clientRef",
+            "targetId", "callerId", "traceId");
+
+    private CborCodec() {
+    }
+
+    public static byte[] fromJson(String json) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(json.length());
+        try (JsonParser parser = JSON.createParser(json);
+             JsonGenerator generator = CBOR.createGenerator(out)) {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null) {
+                if (token == JsonToken.VALUE_STRING && parser.getTextLength() == 36
+                        && ID_FIELDS.contains(parser.currentName())) {
+                    UUID uuid = parseUuid(parser.getText());
+                    if (uuid != null) {
+                        generator.writeBinary(toBytes(uuid));
+                        continue;
+                    }
+                }
+                generator.copyCurrentEvent(parser);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to encode CBOR frame", e);
+        }
+        return out.toByteArray();
+    }
+
+    public static String toJson(byte[] cbor) {
+        StringWriter out = new StringWriter(cbor.length * 2);
+        try (JsonParser parser = CBOR.createParser(cbor);
+             JsonGenerator generator = JSON.createGenerator(out)) {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null) {
+                if (token == JsonToken.VALUE_EMBEDDED_OBJECT) {
+                    byte[] bytes = parser.getBinaryValue();
+                    if (bytes.length == 16) {
+                        generator.writeString(fromBytes(bytes).toString());
+                    } else {
+                        generator.writeBinary(bytes);
+                    }
+                    continue;
+                }
+                generator.copyCurrentEvent(parser);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to decode CBOR frame", e);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Parse a canonical lowercase 8-4-4-4-12 UUID string, or return null without throwing.
+     * Other spellings would not survive the round trip unchanged, so they stay strings.
+     */
+    static UUID parseUuid(String s) {
+        if (s.length() != 36 || s.charAt(8) != '-' || s.charAt(13) != '-'
+                || s.charAt(18) != '-' || s.charAt(23) != '-') {
+            return null;
+        }
+        for (int i = 0; i < 36; i++) {
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                continue;
+            }
+            char c = s.charAt(i);
+            if (!(c >= '0' && c <= '9') && !(c >= 'a' && c <= 'f')) {
+                return null;
+            }
+        }
+        return UUID.fromString(s);
+    }
+
+    private static byte[] toBytes(UUID uuid) {
+        return ByteBuffer.allocate(16)
+                .putLong(uuid.getMostSignificantBits())
+                .putLong(uuid.getLeastSignificantBits())
+                .array();
+    }
+
+    private static UUID fromBytes(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+}
@@ -0,0 +1,50 @@
+package tech.limaxs.chat.infra.websocket;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import tech.limaxs.chat.infra.config.WebSocketConfig;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Bounded LRU of recently persisted SEND_MSG client references on this node.
+ *
+ * Maps a {@code clientRef} to the NEW_MESSAGE event of the message it created, so a
+ * client retrying a send gets the original event back without a database round trip.
+ * Misses fall through to the {@code messages.client_ref} unique constraint.
+ */
+@ApplicationScoped
+public class ClientRefCache {
+
+    private final Map<UUID, SentMessage> entries;
+
+    public ClientRefCache(WebSocketConfig config) {
+        int capacity = config.getIdempotencyCacheSize();
+        this.entries = new LinkedHashMap<>(capacity * 4 / 3 + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, SentMessage> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * The NEW_MESSAGE event for {@code clientRef}, if this sender created it recently.
+     */
+    public String get(UUID clientRef, UUID senderId) {
+        SentMessage sent;
+        synchronized (entries) {
+            sent = entries.get(clientRef);
+        }
+        return sent != null && sent.senderId().equals(senderId) ? sent.eventJson() : null;
+    }
+
+    public void put(UUID clientRef, UUID senderId, String eventJson) {
+        synchronized (entries) {
+            entries.put(clientRef, new SentMessage(senderId, eventJson));
+        }
+    }
+
+    private record SentMessage(UUID senderId, String eventJson) {}
+}
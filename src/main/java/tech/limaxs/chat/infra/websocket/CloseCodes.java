@@ -0,0 +1,20 @@
+package tech.limaxs.chat.infra.websocket;
+
+/**
+ * WebSocket close codes used by the chat endpoint.
+ * 1xxx codes are from RFC 6455, 4xxx codes are application specific.
+ */
+public final class CloseCodes {
+
+    /** Server is overloaded, client should reconnect after the retry-after hint. */
+    public static final int TRY_AGAIN_LATER = 1013;
+
+    /** Connection could not keep up with its outbound traffic. */
+    public static final int SLOW_CONSUMER = 4001;
+
+    /** No frames or pongs arrived within the heartbeat timeout. */
+    public static final int HEARTBEAT_TIMEOUT = 4002;
+
+    private CloseCodes() {
+    }
+}
@@ -0,0 +1,101 @@
+package tech.limaxs.chat.infra.websocket;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Frame codec for the {@code nexus.json.deflate} subprotocol.
+ *
+ * Every binary frame starts with one flag byte: {@link #RAW} followed by the UTF-8 JSON
+ * envelope, or {@link #DEFLATED} followed by the envelope compressed with raw DEFLATE
+ * (RFC 1951, no zlib header). Payloads under the size threshold are sent raw, so small
+ * typing and ack frames cost no compression CPU.
+ */
+public final class DeflateCodec {
+
+    public static final byte RAW = 0;
+    public static final byte DEFLATED = 1;
+
+    private DeflateCodec() {
+    }
+
+    /**
+     * Encode a UTF-8 payload, compressing it when it is at least {@code minBytes} long
+     * and compression actually makes it smaller.
+     */
+    public static byte[] encode(byte[] payload, int minBytes) {
+        if (payload.length >= minBytes) {
+            byte[] deflated = deflate(payload);
+            if (deflated.length < payload.length) {
+                return framed(DEFLATED, deflated, deflated.length);
+            }
+        }
+        return framed(RAW, payload, payload.length);
+    }
+
+    /**
+     * Decode a frame back to its UTF-8 payload.
+     * Throws {@link IllegalArgumentException} if the frame is malformed or inflates past {@code maxBytes}.
+     */
+    public static byte[] decode(byte[] frame, int maxBytes) {
+        if (frame.length == 0) {
+            throw new IllegalArgumentException("Empty frame");
+        }
+        return switch (frame[0]) {
+            case RAW -> Arrays.copyOfRange(frame, 1, frame.length);
+            case DEFLATED -> inflate(frame, maxBytes);
+            default -> throw new IllegalArgumentException("Unknown frame flag: " + frame[0]);
+        };
+    }
+
+    private static byte[] deflate(byte[] payload) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(payload);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(payload.length / 2 + 16);
+            byte[] chunk = new byte[Math.min(payload.length + 16, 8192)];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(chunk);
+                out.write(chunk, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] frame, int maxBytes) {
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(frame, 1, frame.length - 1);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(frame.length * 3);
+            byte[] chunk = new byte[8192];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(chunk);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalArgumentException("Truncated deflate frame");
+                }
+                if (out.size() + n > maxBytes) {
+                    throw new IllegalArgumentException("Inflated frame exceeds " + maxBytes + " bytes");
+                }
+                out.write(chunk, 0, n);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Invalid deflate frame", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static byte[] framed(byte flag, byte[] payload, int length) {
+        byte[] frame = new byte[length + 1];
+        frame[0] = flag;
+        System.arraycopy(payload, 0, frame, 1, length);
+        return frame;
+    }
+}
@@ -0,0 +1,54 @@
+package tech.limaxs.chat.infra.websocket;
+
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import io.vertx.core.Vertx;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import tech.limaxs.chat.infra.config.WebSocketConfig;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Drives redelivery for acknowledged connections from one node-wide periodic timer,
+ * instead of a timer per connection.
+ */
+@ApplicationScoped
+public class DeliveryTracker {
+
+    private final Vertx vertx;
+    private final WebSocketConfig config;
+    private final Set<OutboundQueue> queues = ConcurrentHashMap.newKeySet();
+    private long timerId = -1;
+
+    public DeliveryTracker(Vertx vertx, WebSocketConfig config) {
+        this.vertx = vertx;
+        this.config = config;
+    }
+
+    void onStart(@Observes StartupEvent event) {
+        timerId = vertx.setPeriodic(config.getAckCheckIntervalMs(), id -> {
+            long now = System.nanoTime();
+            for (OutboundQueue queue : queues) {
+                queue.redeliverExpired(now);
+            }
+        });
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        if (timerId != -1) {
+            vertx.cancelTimer(timerId);
+        }
+    }
+
+    public void register(OutboundQueue queue) {
+        if (queue.isAcknowledged()) {
+            queues.add(queue);
+        }
+    }
+
+    public void unregister(OutboundQueue queue) {
+        queues.remove(queue);
+    }
+}
@@ -0,0 +1,140 @@
+package tech.limaxs.chat.infra.websocket;
+
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import io.quarkus.websockets.next.CloseReason;
+import io.quarkus.websockets.next.WebSocketConnection;
+import io.vertx.core.Vertx;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import tech.limaxs.chat.infra.config.WebSocketConfig;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Logger;
+
+/**
+ * Reaps connections that stopped answering pings, using one hashed timer wheel for
+ * the whole node instead of a timer per connection.
+ *
+ * The server pings every connection ({@code quarkus.websockets-next.server.auto-ping-interval})
+ * and any inbound frame or pong {@link Heartbeat#touch() touches} its heartbeat. A single
+ * periodic timer advances the wheel one slot per tick. Only the tick thread touches the
+ * slots, new heartbeats are handed over through a concurrent queue. A heartbeat in the
+ * current slot is either closed, if it was last seen more than {@code chat.ws.heartbeat.timeout-ms}
+ * ago, or moved to the slot of its new deadline. Closing the connection runs the
+ * normal onClose cleanup.
+ */
+@ApplicationScoped
+public class HeartbeatWheel {
+
+    private static final Logger LOG = Logger.getLogger(HeartbeatWheel.class.getName());
+
+    private final Vertx vertx;
+    private final WebSocketConfig config;
+    private final WebSocketMetrics metrics;
+    private final Queue<Heartbeat> incoming = new ConcurrentLinkedQueue<>();
+    private final List<List<Heartbeat>> slots;
+    private final long tickNanos;
+    private long tick;
+    private long timerId = -1;
+
+    public HeartbeatWheel(Vertx vertx, WebSocketConfig config, WebSocketMetrics metrics) {
+        this.vertx = vertx;
+        this.config = config;
+        this.metrics = metrics;
+        this.slots = new ArrayList<>(config.getHeartbeatWheelSize());
+        for (int i = 0; i < config.getHeartbeatWheelSize(); i++) {
+            slots.add(new ArrayList<>());
+        }
+        this.tickNanos = config.getHeartbeatTickMs() * 1_000_000;
+    }
+
+    void onStart(@Observes StartupEvent event) {
+        timerId = vertx.setPeriodic(config.getHeartbeatTickMs(), id -> advance());
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        if (timerId != -1) {
+            vertx.cancelTimer(timerId);
+        }
+    }
+
+    /**
+     * Start supervising a connection. The returned heartbeat should be touched on
+     * every inbound frame and cancelled on close.
+     */
+    public Heartbeat register(WebSocketConnection connection) {
+        Heartbeat heartbeat = new Heartbeat(connection);
+        incoming.add(heartbeat);
+        return heartbeat;
+    }
+
+    private void advance() {
+        long now = System.nanoTime();
+        long timeoutNanos = config.getHeartbeatTimeoutMs() * 1_000_000;
+
+        int index = (int) (tick++ % slots.size());
+        List<Heartbeat> due = slots.set(index, new ArrayList<>());
+
+        Heartbeat added;
+        while ((added = incoming.poll()) != null) {
+            place(added, added.lastSeen + timeoutNanos, now);
+        }
+        for (Heartbeat heartbeat : due) {
+            if (heartbeat.cancelled) {
+                continue;
+            }
+            long deadline = heartbeat.lastSeen + timeoutNanos;
+            if (deadline - now > 0) {
+                place(heartbeat, deadline, now);
+            } else {
+                reap(heartbeat, (now - heartbeat.lastSeen) / 1_000_000);
+            }
+        }
+    }
+
+    /**
+     * Put a heartbeat in the slot its deadline falls into. Deadlines more than one
+     * rotation away land in an earlier slot and are simply moved again when visited.
+     */
+    private void place(Heartbeat heartbeat, long deadline, long now) {
+        long ticksAhead = Math.max(1, Math.min((deadline - now + tickNanos - 1) / tickNanos, slots.size()));
+        slots.get((int) ((tick + ticksAhead - 1) % slots.size())).add(heartbeat);
+    }
+
+    private void reap(Heartbeat heartbeat, long silentMs) {
+        heartbeat.cancelled = true;
+        WebSocketConnection connection = heartbeat.connection;
+        LOG.info("Closing connection " + connection.id() + ": no frames or pongs for " + silentMs + " ms");
+        metrics.heartbeatReaped();
+        connection.close(new CloseReason(CloseCodes.HEARTBEAT_TIMEOUT, "Heartbeat timeout")).subscribe().with(
+            unused -> {},
+            failure -> LOG.warning("Failed to close stale connection " + connection.id() + ": " + failure.getMessage())
+        );
+    }
+
+    /**
+     * Last-seen time of one connection.
+     */
+    public static final class Heartbeat {
+
+        private final WebSocketConnection connection;
+        private volatile long lastSeen = System.nanoTime();
+        private volatile boolean cancelled;
+
+        private Heartbeat(WebSocketConnection connection) {
+            this.connection = connection;
+        }
+
+        public void touch() {
+            lastSeen = System.nanoTime();
+        }
+
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package tech.limaxs.chat.infra.websocket;
+
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.pgclient.PgPool;
+import io.vertx.mutiny.sqlclient.Tuple;
+import jakarta.enterprise.context.ApplicationScoped;
+import tech.limaxs.chat.infra.config.WebSocketConfig;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Cached {@code room_participants} lookups for room authorization and fan-out.
+ *
+ * The WebSocket handler authorizes against the session's room set first; this cache
+ * only answers for rooms missing from it. Answers, positive or negative, and member
+ * lists of rooms are kept for {@code chat.ws.membership.cache-ttl-ms} and dropped as
+ * soon as a membership change for the room arrives.
+ */
+@ApplicationScoped
+public class MembershipCache {
+
+    private final PgPool pgPool;
+    private final WebSocketConfig config;
+    private final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<UUID, Members> members = new ConcurrentHashMap<>();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    public MembershipCache(PgPool pgPool, WebSocketConfig config) {
+        this.pgPool = pgPool;
+        this.config = config;
+    }
+
+    public Uni<Boolean> isMember(UUID roomId, UUID userId) {
+        Key key = new Key(roomId, userId);
+        long now = System.currentTimeMillis();
+        Entry cached = entries.get(key);
+        if (cached != null && cached.expiresAt() > now) {
+            return Uni.createFrom().item(cached.member());
+        }
+
+        String sql = "SELECT 1 FROM room_participants WHERE room_id = $1 AND user_id = $2";
+        return pgPool.preparedQuery(sql).execute(Tuple.of(roomId, userId))
+                .map(rowSet -> {
+                    boolean member = rowSet.size() > 0;
+                    if (entries.size() >= config.getMembershipCacheSize()) {
+                        evict(now);
+                    }
+                    entries.put(key, new Entry(member, now + config.getMembershipCacheTtlMs()));
+                    return member;
+                });
+    }
+
+    /**
+     * User IDs of every participant of the room.
+     */
+    public Uni<List<UUID>> members(UUID roomId) {
+        long now = System.currentTimeMillis();
+        Members cached = members.get(roomId);
+        if (cached != null && cached.expiresAt() > now) {
+            return Uni.createFrom().item(cached.userIds());
+        }
+
+        String sql = "SELECT user_id FROM room_participants WHERE room_id = $1";
+        return pgPool.preparedQuery(sql).execute(Tuple.of(roomId))
+                .map(rowSet -> {
+                    List<UUID> userIds = new ArrayList<>(rowSet.size());
+                    rowSet.forEach(row -> userIds.add(row.getUUID("user_id")));
+                    if (members.size() >= config.getMembershipCacheSize()) {
+                        members.values().removeIf(entry -> entry.expiresAt() <= now);
+                    }
+                    members.put(roomId, new Members(List.copyOf(userIds), now + config.getMembershipCacheTtlMs()));
+                    return userIds;
+                });
+    }
+
+    public void invalidate(UUID roomId, UUID userId) {
+        entries.remove(new Key(roomId, userId));
+        members.remove(roomId);
+    }
+
+    /**
+     * Drop expired entries, then arbitrary ones until the cache is back under its bound.
+     */
+    private void evict(long now) {
+        if (!evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            entries.values().removeIf(entry -> entry.expiresAt() <= now);
+            Iterator<Key> it = entries.keySet().iterator();
+            while (entries.size() >= config.getMembershipCacheSize() && it.hasNext()) {
+                it.next();
+                it.remove();
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    private record Key(UUID roomId, UUID userId) {}
+
+    private record Entry(boolean member, long expiresAt) {}
+
+    private record Members(List<UUID> userIds, long expiresAt) {}
+}
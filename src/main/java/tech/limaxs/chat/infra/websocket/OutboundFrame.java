@@ -0,0 +1,143 @@
+package tech.limaxs.chat.infra.websocket;
+
+import io.quarkus.websockets.next.WebSocketConnection;
+import io.smallrye.mutiny.Uni;
+import io.vertx.core.buffer.Buffer;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * An outbound event serialized once and shared by every recipient.
+ *
+ * Each wire encoding is produced lazily, at most once per frame. Vert.x writes a
+ * duplicate of the buffer per connection, so a broadcast to N members allocates one
+ * payload instead of N.
+ *
+ * Low-priority frames (typing, presence) may be dropped for congested connections.
+ */
+public final class OutboundFrame {
+
+    private final String json;
+    private final boolean lowPriority;
+    private volatile Buffer jsonBytes;
+    private volatile Buffer cborBytes;
+    private volatile Buffer deflateBytes;
+    private volatile int utf8Length = -1;
+
+    public OutboundFrame(String json) {
+        this(json, false);
+    }
+
+    public OutboundFrame(String json, boolean lowPriority) {
+        this.json = json;
+        this.lowPriority = lowPriority;
+    }
+
+    public static OutboundFrame lowPriority(String json) {
+        return new OutboundFrame(json, true);
+    }
+
+    /**
+     * A copy of this frame with {@code "seq"} as the first envelope field.
+     * Stamped frames are per connection, so they do not share encoded buffers.
+     */
+    public OutboundFrame withSeq(long seq) {
+        String rest = json.substring(1).stripLeading();
+        String separator = rest.startsWith("}") ? "" : ",";
+        return new OutboundFrame("{\"seq\":" + seq + separator + rest, lowPriority);
+    }
+
+    public String json() {
+        return json;
+    }
+
+    public boolean isLowPriority() {
+        return lowPriority;
+    }
+
+    /**
+     * Bytes this frame puts on the wire in the given format, used for queue accounting.
+     * Binary encodings are produced here if needed and reused when the frame is sent.
+     */
+    public long size(WireFormat format, int compressMinBytes) {
+        return switch (format) {
+            case JSON_TEXT, JSON_BINARY -> utf8Length();
+            case CBOR -> cborBytes().length();
+            case JSON_DEFLATE -> deflateBytes(compressMinBytes).length();
+        };
+    }
+
+    /**
+     * UTF-8 length of the JSON, counted without encoding it.
+     */
+    private int utf8Length() {
+        int length = utf8Length;
+        if (length < 0) {
+            length = 0;
+            for (int i = 0; i < json.length(); i++) {
+                char c = json.charAt(i);
+                if (c < 0x80) {
+                    length += 1;
+                } else if (c < 0x800) {
+                    length += 2;
+                } else if (Character.isHighSurrogate(c) && i + 1 < json.length()
+                        && Character.isLowSurrogate(json.charAt(i + 1))) {
+                    length += 4;
+                    i++;
+                } else {
+                    length += 3;
+                }
+            }
+            utf8Length = length;
+        }
+        return length;
+    }
+
+    /**
+     * UTF-8 encoding of the JSON envelope. Concurrent first calls may each encode,
+     * but all later calls return the same buffer.
+     */
+    public Buffer jsonBytes() {
+        Buffer bytes = jsonBytes;
+        if (bytes == null) {
+            bytes = Buffer.buffer(json.getBytes(StandardCharsets.UTF_8));
+            jsonBytes = bytes;
+        }
+        return bytes;
+    }
+
+    /**
+     * CBOR encoding of the envelope, transcoded once on first use.
+     */
+    public Buffer cborBytes() {
+        Buffer bytes = cborBytes;
+        if (bytes == null) {
+            bytes = Buffer.buffer(CborCodec.fromJson(json));
+            cborBytes = bytes;
+        }
+        return bytes;
+    }
+
+    /**
+     * {@link DeflateCodec} frame of the envelope, compressed once on first use when it is
+     * at least {@code compressMinBytes} long. Every recipient shares the compressed bytes.
+     */
+    public Buffer deflateBytes(int compressMinBytes) {
+        Buffer bytes = deflateBytes;
+        if (bytes == null) {
+            byte[] frame = DeflateCodec.encode(json.getBytes(StandardCharsets.UTF_8), compressMinBytes);
+            bytes = Buffer.buffer(frame);
+            deflateBytes = bytes;
+        }
+        return bytes;
+    }
+
+    public Uni<Void> sendTo(WebSocketConnection connection, int compressMinBytes) {
+        return switch (WireFormat.of(connection)) {
+            case JSON_TEXT -> connection.sendText(json);
+            case JSON_BINARY -> connection.sendBinary(jsonBytes());
+            case CBOR -> connection.sendBinary(cborBytes());
+            case JSON_DEFLATE -> connection.sendBinary(deflateBytes(compressMinBytes));
+        };
+    }
+}
@@ -0,0 +1,382 @@
+package tech.limaxs.chat.infra.websocket;
+
+import io.quarkus.websockets.next.CloseReason;
+import io.quarkus.websockets.next.WebSocketConnection;
+import io.vertx.core.Vertx;
+import tech.limaxs.chat.infra.config.WebSocketConfig;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Bounded outbound path for one connection.
+ *
+ * Tracks bytes handed to Vert.x but not yet written to the socket. Above the high
+ * watermark the connection is congested: low-priority frames (typing, presence) are
+ * dropped until it drains below the low watermark. A connection that stays congested
+ * past the grace period, or exceeds the hard limit, is closed as a slow consumer.
+ *
+ * A coalescing queue holds frames for a short window and writes them as one JSON array
+ * frame, trading a few milliseconds of latency for fewer frames and write flushes during bursts.
+ *
+ * An acknowledged queue stamps every frame that is not low priority with a sequence
+ * number and keeps it in an {@link AckWindow} until the client ACKs it. Frames are
+ * written, or join the open batch, in sequence order. Frames still
+ * unacknowledged after {@code chat.ws.ack.redeliver-after-ms} are sent again. A client
+ * that lets the window fill up is closed as a slow consumer.
+ *
+ * While a client resumes missed history, live traffic can be held back and released
+ * after it, so the client sees history first. Holds nest: live traffic resumes only
+ * when every resume that held it has released it.
+ */
+public final class OutboundQueue {
+
+    private static final Logger LOG = Logger.getLogger(OutboundQueue.class.getName());
+
+    private final WebSocketConnection connection;
+    private final WebSocketConfig config;
+    private final WebSocketMetrics metrics;
+    private final WireFormat format;
+    private final AtomicLong pendingBytes = new AtomicLong();
+    private final AtomicBoolean evicted = new AtomicBoolean();
+    private volatile long congestedSince;
+
+    // Coalescing state, only used when vertx is set
+    private final Vertx vertx;
+    private final Object batchLock = new Object();
+    private List<OutboundFrame> batch;
+    private long batchBytes;
+
+    // Live traffic held while history is resumed
+    private final Object holdLock = new Object();
+    private List<OutboundFrame> held;
+    private long heldBytes;
+    private int holds;
+
+    // Delivery tracking, only used for acknowledged queues
+    private final AckWindow acks;
+    private final Object sequenceLock = new Object();
+
+    public OutboundQueue(WebSocketConnection connection, WebSocketConfig config, WebSocketMetrics metrics) {
+        this(connection, config, metrics, null, false);
+    }
+
+    /**
+     * @param coalesceOn   Vert.x instance for the coalescing window timer, or null to write frames immediately
+     * @param acknowledged whether frames are sequenced and kept until the client ACKs them
+     */
+    public OutboundQueue(WebSocketConnection connection, WebSocketConfig config, WebSocketMetrics metrics,
+                         Vertx coalesceOn, boolean acknowledged) {
+        this.connection = connection;
+        this.config = config;
+        this.metrics = metrics;
+        this.format = WireFormat.of(connection);
+        this.vertx = coalesceOn;
+        this.acks = acknowledged ? new AckWindow(config.getAckWindowSize()) : null;
+    }
+
+    public boolean isAcknowledged() {
+        return acks != null;
+    }
+
+    public void offer(OutboundFrame frame) {
+        offer(frame, false);
+    }
+
+    /**
+     * Offer a frame that must go out ahead of held live traffic, such as resumed history.
+     */
+    public void offerBeforeHeld(OutboundFrame frame) {
+        offer(frame, true);
+    }
+
+    private void offer(OutboundFrame frame, boolean bypassHold) {
+        if (evicted.get()) {
+            return;
+        }
+
+        long pending = pendingBytes.get();
+        if (pending >= config.getOutboundMaxQueuedBytes()) {
+            evict("queue limit of " + config.getOutboundMaxQueuedBytes() + " bytes exceeded");
+            return;
+        }
+        if (isCongested(pending)) {
+            long congestedForMs = (System.nanoTime() - congestedSince) / 1_000_000;
+            if (congestedForMs >= config.getOutboundSlowConsumerGraceMs()) {
+                evict("above high watermark for " + congestedForMs + " ms");
+                return;
+            }
+            if (frame.isLowPriority()) {
+                metrics.frameDropped();
+                return;
+            }
+        }
+
+        if (!bypassHold) {
+            synchronized (holdLock) {
+                if (held != null) {
+                    if (frame.isLowPriority()) {
+                        metrics.frameDropped();
+                    } else if ((heldBytes += sizeOf(frame)) > config.getOutboundMaxQueuedBytes()) {
+                        held = null;
+                        heldBytes = 0;
+                        evict("held " + config.getOutboundMaxQueuedBytes() + " bytes of live traffic");
+                    } else {
+                        held.add(frame);
+                    }
+                    return;
+                }
+            }
+        }
+        deliver(frame);
+    }
+
+    private void deliver(OutboundFrame frame) {
+        if (acks == null || frame.isLowPriority()) {
+            submit(frame);
+            return;
+        }
+        // Stamp and submit under one lock, so frames reach the wire in sequence order
+        synchronized (sequenceLock) {
+            OutboundFrame stamped = acks.stamp(frame, System.nanoTime());
+            if (stamped == null) {
+                evict("ack window of " + acks.capacity() + " frames full");
+                return;
+            }
+            submit(stamped);
+        }
+    }
+
+    /**
+     * Hold live traffic until the matching {@link #release()}, so frames sent with
+     * {@link #offerBeforeHeld} reach the client first. Low-priority frames are dropped
+     * while held.
+     */
+    public void hold() {
+        synchronized (holdLock) {
+            if (holds++ == 0) {
+                held = new ArrayList<>();
+                heldBytes = 0;
+            }
+        }
+    }
+
+    /**
+     * Release one {@link #hold()}. When the last hold is released, send the held frames
+     * in order and resume live delivery.
+     */
+    public void release() {
+        synchronized (holdLock) {
+            if (holds == 0 || --holds > 0) {
+                return;
+            }
+            List<OutboundFrame> frames = held;
+            held = null;
+            heldBytes = 0;
+            if (frames != null && !evicted.get()) {
+                frames.forEach(this::deliver);
+            }
+        }
+    }
+
+    /**
+     * Release frames up to the highest contiguous sequence number the client received.
+     */
+    public void acknowledge(long seq) {
+        if (acks != null) {
+            acks.acknowledge(seq);
+        }
+    }
+
+    /**
+     * Send again every frame unacknowledged for longer than the redelivery timeout.
+     * Called periodically by {@link DeliveryTracker}.
+     */
+    void redeliverExpired(long now) {
+        if (acks == null || evicted.get()) {
+            return;
+        }
+        List<OutboundFrame> expired = acks.expired(now, config.getAckRedeliverAfterMs() * 1_000_000);
+        for (OutboundFrame frame : expired) {
+            metrics.frameRedelivered();
+            submit(frame);
+        }
+    }
+
+    private void submit(OutboundFrame frame) {
+        long size = sizeOf(frame);
+        pendingBytes.addAndGet(size);
+        metrics.queued(size);
+        if (vertx == null) {
+            write(frame, size);
+        } else {
+            enqueue(frame, size);
+        }
+    }
+
+    private void write(OutboundFrame frame, long size) {
+        frame.sendTo(connection, config.getCompressionMinBytes()).subscribe().with(
+            unused -> written(size),
+            failure -> {
+                written(size);
+                LOG.warning("Failed to send to connection " + connection.id() + ": " + failure.getMessage());
+            }
+        );
+    }
+
+    /**
+     * Add a frame to the open batch. The first frame of a batch arms the window timer;
+     * a batch that reaches the byte limit is written at once.
+     */
+    private void enqueue(OutboundFrame frame, long size) {
+        List<OutboundFrame> ready = null;
+        long readyBytes = 0;
+        List<OutboundFrame> started = null;
+        synchronized (batchLock) {
+            if (batch == null) {
+                batch = new ArrayList<>();
+                started = batch;
+            }
+            batch.add(frame);
+            batchBytes += size;
+            if (batchBytes >= config.getCoalesceMaxBatchBytes()) {
+                ready = batch;
+                readyBytes = batchBytes;
+                batch = null;
+                batchBytes = 0;
+            }
+        }
+        if (ready != null) {
+            writeBatch(ready, readyBytes);
+        } else if (started != null) {
+            List<OutboundFrame> window = started;
+            vertx.setTimer(config.getCoalesceWindowMs(), id -> flush(window));
+        }
+    }
+
+    /**
+     * Write the batch opened with {@code window}, unless it was already written.
+     */
+    private void flush(List<OutboundFrame> window) {
+        List<OutboundFrame> ready;
+        long readyBytes;
+        synchronized (batchLock) {
+            if (batch != window) {
+                return;
+            }
+            ready = batch;
+            readyBytes = batchBytes;
+            batch = null;
+            batchBytes = 0;
+        }
+        writeBatch(ready, readyBytes);
+    }
+
+    private void writeBatch(List<OutboundFrame> frames, long size) {
+        if (frames.size() == 1) {
+            // Keep the frame's shared encoded buffers
+            write(frames.get(0), size);
+            return;
+        }
+        int length = frames.size() + 1;
+        for (OutboundFrame frame : frames) {
+            length += frame.json().length();
+        }
+        StringBuilder json = new StringBuilder(length).append('[');
+        for (int i = 0; i < frames.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append(frames.get(i).json());
+        }
+        metrics.framesCoalesced(frames.size() - 1);
+        write(new OutboundFrame(json.append(']').toString()), size);
+    }
+
+    /**
+     * Drop a batch that will never be written, releasing its accounting.
+     */
+    private void discardBatch() {
+        long dropped;
+        synchronized (batchLock) {
+            dropped = batchBytes;
+            batch = null;
+            batchBytes = 0;
+        }
+        if (dropped > 0) {
+            written(dropped);
+        }
+    }
+
+    /**
+     * Bytes the frame takes in this connection's wire format.
+     */
+    private long sizeOf(OutboundFrame frame) {
+        return frame.size(format, config.getCompressionMinBytes());
+    }
+
+    public long getPendingBytes() {
+        return pendingBytes.get();
+    }
+
+    /**
+     * Stop accepting frames once the connection has closed.
+     */
+    public void closed() {
+        evicted.set(true);
+        synchronized (holdLock) {
+            held = null;
+            heldBytes = 0;
+        }
+        discardBatch();
+        endCongestion();
+    }
+
+    /**
+     * Enter congestion at the high watermark and leave it at the low watermark.
+     */
+    private boolean isCongested(long pending) {
+        synchronized (this) {
+            if (congestedSince == 0 && pending >= config.getOutboundHighWatermarkBytes()) {
+                congestedSince = System.nanoTime();
+                metrics.congestionStarted();
+            } else if (congestedSince != 0 && pending <= config.getOutboundLowWatermarkBytes()) {
+                congestedSince = 0;
+                metrics.congestionEnded();
+            }
+            return congestedSince != 0;
+        }
+    }
+
+    private void written(long size) {
+        long pending = pendingBytes.addAndGet(-size);
+        metrics.written(size);
+        if (congestedSince != 0) {
+            isCongested(pending);
+        }
+    }
+
+    private synchronized void endCongestion() {
+        if (congestedSince != 0) {
+            congestedSince = 0;
+            metrics.congestionEnded();
+        }
+    }
+
+    private void evict(String reason) {
+        if (!evicted.compareAndSet(false, true)) {
+            return;
+        }
+        LOG.warning("Closing slow consumer " + connection.id() + ": " + reason);
+        metrics.slowConsumerEvicted();
+        discardBatch();
+        endCongestion();
+        connection.close(new CloseReason(CloseCodes.SLOW_CONSUMER, "Slow consumer")).subscribe().with(
+            unused -> {},
+            failure -> LOG.warning("Failed to close slow consumer " + connection.id() + ": " + failure.getMessage())
+        );
+    }
+}
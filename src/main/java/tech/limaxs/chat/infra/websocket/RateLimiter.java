@@ -0,0 +1,201 @@
+package tech.limaxs.chat.infra.websocket;
+
+import io.quarkus.scheduler.Scheduled;
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+import tech.limaxs.chat.infra.config.WebSocketConfig;
+import tech.limaxs.chat.infra.redis.RedisService;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Token-bucket limits on client events, per user and per room.
+ *
+ * Buckets live in memory on this node and are lock-free. Each one is a single
+ * "theoretical arrival time" updated by CAS (GCRA), which admits the same traffic as a
+ * token bucket of the configured rate and burst. Buckets that have fully refilled
+ * are swept, since a fresh bucket behaves the same.
+ *
+ * User buckets are charged as events arrive. Room buckets are charged only after the
+ * sender is known to be a room member, so outsiders cannot use up a room's budget. A user
+ * token is given back when the room rejects the event.
+ *
+ * With {@code chat.ws.rate-limit.global.enabled}, SEND_MSG is also counted per room in
+ * one-second Redis windows shared by every node.
+ */
+@ApplicationScoped
+public class RateLimiter {
+
+    private static final Logger LOG = Logger.getLogger(RateLimiter.class.getName());
+
+    private final WebSocketConfig config;
+    private final RedisService redisService;
+    private final WebSocketMetrics metrics;
+    private final Map<Key, TokenBucket> buckets = new ConcurrentHashMap<>();
+
+    public RateLimiter(WebSocketConfig config, RedisService redisService, WebSocketMetrics metrics) {
+        this.config = config;
+        this.redisService = redisService;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Take a token for the event from the user's bucket. Events without a configured
+     * limit are always allowed.
+     */
+    public boolean tryAcquire(String event, UUID userId) {
+        if (!config.isRateLimitEnabled()) {
+            return true;
+        }
+        Scope scope = userScope(event);
+        if (scope == null || take(scope, userId)) {
+            return true;
+        }
+        metrics.rateLimited();
+        return false;
+    }
+
+    /**
+     * Take a token from the room's bucket, once the sender is known to be a member.
+     * If the room is out of tokens, the user's token for the event is given back.
+     */
+    public boolean tryAcquireRoom(String event, UUID userId, UUID roomId) {
+        if (!config.isRateLimitEnabled() || !"SEND_MSG".equals(event) || take(Scope.SEND_MSG_ROOM, roomId)) {
+            return true;
+        }
+        refund(userScope(event), userId);
+        metrics.rateLimited();
+        return false;
+    }
+
+    /**
+     * Check the cluster-wide SEND_MSG limit for a room, once the sender is known to be a
+     * member. Allows when global limits are off or Redis is unavailable. On rejection the
+     * user's and the room's local tokens are given back.
+     */
+    public Uni<Boolean> tryAcquireGlobal(String event, UUID userId, UUID roomId) {
+        if (!config.isRateLimitEnabled() || !config.isGlobalRateLimitEnabled()
+                || roomId == null || !"SEND_MSG".equals(event)) {
+            return Uni.createFrom().item(true);
+        }
+        long second = System.currentTimeMillis() / 1000;
+        return redisService.incrementRateWindow("room:" + roomId, second)
+                .map(count -> {
+                    boolean allowed = count <= config.getGlobalSendMsgRoomPerSecond();
+                    if (!allowed) {
+                        refund(Scope.SEND_MSG_USER, userId);
+                        refund(Scope.SEND_MSG_ROOM, roomId);
+                        metrics.rateLimited();
+                    }
+                    return allowed;
+                })
+                .onFailure().recoverWithItem(failure -> {
+                    LOG.warning("Global rate limit check failed, allowing: " + failure.getMessage());
+                    return true;
+                });
+    }
+
+    @Scheduled(every = "{chat.ws.rate-limit.sweep-interval:60s}")
+    void sweep() {
+        long now = System.nanoTime();
+        buckets.values().removeIf(bucket -> bucket.isFull(now));
+    }
+
+    private static Scope userScope(String event) {
+        return switch (event) {
+            case "SEND_MSG" -> Scope.SEND_MSG_USER;
+            case "TYPING" -> Scope.TYPING_USER;
+            case "SIGNAL_SDP", "SIGNAL_ICE" -> Scope.SIGNAL_USER;
+            default -> null;
+        };
+    }
+
+    private boolean take(Scope scope, UUID id) {
+        double perSecond = perSecond(scope);
+        if (perSecond <= 0) {
+            return true;
+        }
+        return buckets.computeIfAbsent(new Key(scope, id), key -> new TokenBucket(perSecond, burst(scope)))
+                .tryAcquire(System.nanoTime());
+    }
+
+    private void refund(Scope scope, UUID id) {
+        if (scope == null) {
+            return;
+        }
+        TokenBucket bucket = buckets.get(new Key(scope, id));
+        if (bucket != null) {
+            bucket.refund();
+        }
+    }
+
+    private double perSecond(Scope scope) {
+        return switch (scope) {
+            case SEND_MSG_USER -> config.getSendMsgUserPerSecond();
+            case SEND_MSG_ROOM -> config.getSendMsgRoomPerSecond();
+            case TYPING_USER -> config.getTypingUserPerSecond();
+            case SIGNAL_USER -> config.getSignalUserPerSecond();
+        };
+    }
+
+    private int burst(Scope scope) {
+        return switch (scope) {
+            case SEND_MSG_USER -> config.getSendMsgUserBurst();
+            case SEND_MSG_ROOM -> config.getSendMsgRoomBurst();
+            case TYPING_USER -> config.getTypingUserBurst();
+            case SIGNAL_USER -> config.getSignalUserBurst();
+        };
+    }
+
+    private enum Scope {
+        SEND_MSG_USER, SEND_MSG_ROOM, TYPING_USER, SIGNAL_USER
+    }
+
+    private record Key(Scope scope, UUID id) {}
+
+    /**
+     * Token bucket as GCRA: one token is emitted every {@code interval}, and a request is
+     * admitted while the theoretical arrival time is at most {@code burst} tokens ahead of now.
+     */
+    private static final class TokenBucket {
+
+        private final long interval;
+        private final long tolerance;
+        private final AtomicLong arrival = new AtomicLong(Long.MIN_VALUE);
+
+        TokenBucket(double perSecond, int burst) {
+            this.interval = (long) (1_000_000_000L / perSecond);
+            this.tolerance = interval * Math.max(burst, 1);
+        }
+
+        boolean tryAcquire(long now) {
+            while (true) {
+                long current = arrival.get();
+                long start = current == Long.MIN_VALUE || current - now < 0 ? now : current;
+                long next = start + interval;
+                if (next - now > tolerance) {
+                    return false;
+                }
+                if (arrival.compareAndSet(current, next)) {
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * Give back one token taken by {@link #tryAcquire}.
+         */
+        void refund() {
+            arrival.getAndUpdate(current -> current == Long.MIN_VALUE ? current : current - interval);
+        }
+
+        boolean isFull(long now) {
+            long current = arrival.get();
+            return current == Long.MIN_VALUE || current - now <= 0;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package tech.limaxs.chat.infra.websocket;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.quarkus.scheduler.Scheduled;
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+import tech.limaxs.chat.api.websocket.dto.ChatEvent;
+import tech.limaxs.chat.api.websocket.dto.TypingData;
+import tech.limaxs.chat.infra.config.WebSocketConfig;
+import tech.limaxs.chat.infra.redis.RedisService;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * Per-room, per-user typing state that turns keystroke-rate TYPING frames into
+ * typing state changes.
+ *
+ * Only changes are published to {@code typing:room:{id}}: repeated "still typing"
+ * frames just extend the expiry, and a user publishes at most one change per
+ * {@code chat.ws.typing.min-interval-ms}. A change that comes sooner is held and
+ * published by the sweep once the interval has passed, unless it was reverted in the
+ * meantime. Typing that is not refreshed within {@code chat.ws.typing.expiry-ms}
+ * is published as stopped.
+ */
+@ApplicationScoped
+public class TypingThrottle {
+
+    private static final Logger LOG = Logger.getLogger(TypingThrottle.class.getName());
+
+    private final RedisService redisService;
+    private final WebSocketConfig config;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<Key, TypingState> states = new ConcurrentHashMap<>();
+
+    public TypingThrottle(RedisService redisService, WebSocketConfig config) {
+        this.redisService = redisService;
+        this.config = config;
+    }
+
+    /**
+     * Record a TYPING frame from a client and publish it if it changes the visible state.
+     */
+    public Uni<Void> update(UUID roomId, UUID userId, boolean typing) {
+        long now = System.nanoTime();
+        long intervalNanos = config.getTypingMinIntervalMs() * 1_000_000;
+        long expiresAt = now + config.getTypingExpiryMs() * 1_000_000;
+        boolean[] publish = new boolean[1];
+
+        states.compute(new Key(roomId, userId), (key, state) -> {
+            if (state == null) {
+                if (!typing) {
+                    return null;
+                }
+                publish[0] = true;
+                return new TypingState(true, true, now, expiresAt);
+            }
+            if (state.desired() == typing || state.published() == typing) {
+                // Redundant, or reverting a change that was never published
+                return new TypingState(state.published(), typing, state.publishedAt(),
+                        typing ? expiresAt : state.expiresAt());
+            }
+            if (now - state.publishedAt() >= intervalNanos) {
+                publish[0] = true;
+                return new TypingState(typing, typing, now, expiresAt);
+            }
+            // Too soon after the last change; the sweep publishes it later
+            return new TypingState(state.published(), typing, state.publishedAt(), expiresAt);
+        });
+
+        return publish[0] ? publish(roomId, userId, typing) : Uni.createFrom().voidItem();
+    }
+
+    /**
+     * Expire stale typing, publish held changes whose interval has passed and drop idle entries.
+     */
+    @Scheduled(every = "{chat.ws.typing.sweep-interval:1s}")
+    void sweep() {
+        long now = System.nanoTime();
+        long intervalNanos = config.getTypingMinIntervalMs() * 1_000_000;
+
+        for (Key key : states.keySet()) {
+            boolean[] publish = new boolean[2];
+            states.computeIfPresent(key, (k, state) -> {
+                boolean desired = state.desired() && now - state.expiresAt() < 0;
+                boolean intervalPassed = now - state.publishedAt() >= intervalNanos;
+                if (desired != state.published() && intervalPassed) {
+                    publish[0] = true;
+                    publish[1] = desired;
+                    return new TypingState(desired, desired, now, state.expiresAt());
+                }
+                if (!desired && !state.published() && intervalPassed) {
+                    return null;
+                }
+                return desired == state.desired() ? state
+                        : new TypingState(state.published(), desired, state.publishedAt(), state.expiresAt());
+            });
+            if (publish[0]) {
+                publish(key.roomId(), key.userId(), publish[1]).subscribe().with(
+                    unused -> {},
+                    failure -> LOG.warning("Failed to publish typing change for room " + key.roomId()
+                            + ": " + failure.getMessage())
+                );
+            }
+        }
+    }
+
+    private Uni<Void> publish(UUID roomId, UUID userId, boolean typing) {
+        try {
+            TypingData typingData = new TypingData();
+            typingData.setRoomId(roomId);
+            typingData.setUserId(userId);
+            typingData.setTyping(typing);
+            ChatEvent event = new ChatEvent("TYPING", typingData);
+            return redisService.publishTyping(roomId, objectMapper.writeValueAsString(event));
+        } catch (Exception e) {
+            LOG.severe("Error publishing TYPING: " + e.getMessage());
+            return Uni.createFrom().voidItem();
+        }
+    }
+
+    private record Key(UUID roomId, UUID userId) {}
+
+    /**
+     * {@code published} is what room members last saw, {@code desired} what the client last sent.
+     */
+    private record TypingState(boolean published, boolean desired, long publishedAt, long expiresAt) {}
+}
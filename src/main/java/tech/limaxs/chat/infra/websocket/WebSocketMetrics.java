@@ -0,0 +1,101 @@
+package tech.limaxs.chat.infra.websocket;
+
+import jakarta.enterprise.context.ApplicationScoped;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Node-wide WebSocket delivery counters, exposed through the admin stats endpoint.
+ */
+@ApplicationScoped
+public class WebSocketMetrics {
+
+    private final AtomicLong queuedBytes = new AtomicLong();
+    private final AtomicInteger congestedConnections = new AtomicInteger();
+    private final LongAdder droppedFrames = new LongAdder();
+    private final LongAdder slowConsumerEvictions = new LongAdder();
+    private final LongAdder coalescedFrames = new LongAdder();
+    private final LongAdder rateLimitedEvents = new LongAdder();
+    private final LongAdder heartbeatReaped = new LongAdder();
+    private final LongAdder redeliveredFrames = new LongAdder();
+
+    void queued(long bytes) {
+        queuedBytes.addAndGet(bytes);
+    }
+
+    void written(long bytes) {
+        queuedBytes.addAndGet(-bytes);
+    }
+
+    void congestionStarted() {
+        congestedConnections.incrementAndGet();
+    }
+
+    void congestionEnded() {
+        congestedConnections.decrementAndGet();
+    }
+
+    void frameDropped() {
+        droppedFrames.increment();
+    }
+
+    void slowConsumerEvicted() {
+        slowConsumerEvictions.increment();
+    }
+
+    void framesCoalesced(int saved) {
+        coalescedFrames.add(saved);
+    }
+
+    void rateLimited() {
+        rateLimitedEvents.increment();
+    }
+
+    void heartbeatReaped() {
+        heartbeatReaped.increment();
+    }
+
+    void frameRedelivered() {
+        redeliveredFrames.increment();
+    }
+
+    /** Bytes handed to connections but not yet written to the socket, across all connections. */
+    public long getQueuedBytes() {
+        return queuedBytes.get();
+    }
+
+    /** Connections currently above their high watermark. */
+    public int getCongestedConnections() {
+        return congestedConnections.get();
+    }
+
+    public long getDroppedFrames() {
+        return droppedFrames.sum();
+    }
+
+    public long getSlowConsumerEvictions() {
+        return slowConsumerEvictions.sum();
+    }
+
+    /** Frames saved by packing events into batch frames for coalescing connections. */
+    public long getCoalescedFrames() {
+        return coalescedFrames.sum();
+    }
+
+    /** Client events rejected by the per-user, per-room or global rate limits. */
+    public long getRateLimitedEvents() {
+        return rateLimitedEvents.sum();
+    }
+
+    /** Connections closed because they stopped answering pings. */
+    public long getHeartbeatReaped() {
+        return heartbeatReaped.sum();
+    }
+
+    /** Frames sent again because the client did not acknowledge them in time. */
+    public long getRedeliveredFrames() {
+        return redeliveredFrames.sum();
+    }
+}
@@ -0,0 +1,45 @@
+package tech.limaxs.chat.infra.websocket;
+
+import io.quarkus.websockets.next.WebSocketConnection;
+
+/**
+ * Frame encodings a client can negotiate through the Sec-WebSocket-Protocol header.
+ * Clients that request no subprotocol get JSON text frames.
+ */
+public enum WireFormat {
+
+    /** JSON envelope in text frames (default). */
+    JSON_TEXT(null),
+
+    /** The same JSON envelope as UTF-8 in binary frames; broadcasts share one encoded buffer. */
+    JSON_BINARY("nexus.json.binary"),
+
+    /** The envelope in CBOR binary frames, with UUIDs as 16-byte byte strings. See {@link CborCodec}. */
+    CBOR("nexus.cbor"),
+
+    /** The UTF-8 JSON envelope in binary frames, compressed above a size threshold. See {@link DeflateCodec}. */
+    JSON_DEFLATE("nexus.json.deflate");
+
+    private final String subprotocol;
+
+    WireFormat(String subprotocol) {
+        this.subprotocol = subprotocol;
+    }
+
+    public String getSubprotocol() {
+        return subprotocol;
+    }
+
+    public static WireFormat of(WebSocketConnection connection) {
+        String negotiated = connection.subprotocol();
+        if (negotiated == null || negotiated.isEmpty()) {
+            return JSON_TEXT;
+        }
+        for (WireFormat format : values()) {
+            if (negotiated.equals(format.subprotocol)) {
+                return format;
+            }
+        }
+        return JSON_TEXT;
+    }
+}